@@ -0,0 +1,11 @@
+-- Conecta a réplica ao primário ("db") e inicia a replicação por GTID.
+-- O schema (schema.sql) e os dados chegam pelo binlog do primário.
+CHANGE REPLICATION SOURCE TO
+    SOURCE_HOST = 'db',
+    SOURCE_PORT = 3306,
+    SOURCE_USER = 'repl_user',
+    SOURCE_PASSWORD = 'repl_password',
+    SOURCE_AUTO_POSITION = 1,
+    GET_SOURCE_PUBLIC_KEY = 1,
+    SOURCE_CONNECT_RETRY = 5;
+START REPLICA;
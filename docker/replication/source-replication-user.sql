@@ -0,0 +1,3 @@
+-- Usuário usado pela réplica (perfil "replica") para ler o binlog do primário
+CREATE USER IF NOT EXISTS 'repl_user'@'%' IDENTIFIED BY 'repl_password';
+GRANT REPLICATION SLAVE ON *.* TO 'repl_user'@'%';
@@ -0,0 +1,74 @@
+package com.gwsistemas.tracking.analytics;
+
+import com.gwsistemas.tracking.enums.TrackingStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Conjunto de {@link SlaWindow} indexado pelo início da janela (epoch seconds, UTC).
+ * Usado tanto para a gravação incremental quanto para o backfill em paralelo (um agregado por chunk).
+ */
+public class SlaAggregate {
+
+    private final long windowSeconds;
+    private final ConcurrentSkipListMap<Long, SlaWindow> windows = new ConcurrentSkipListMap<>();
+
+    public SlaAggregate(Duration window) {
+        this.windowSeconds = window.toSeconds();
+    }
+
+    /**
+     * Registra um evento aceito e, se houver evento anterior, a transição a partir dele.
+     * O evento entra na janela do seu próprio timestamp.
+     */
+    public void record(TrackingStatus previousStatus, LocalDateTime previousTimestamp,
+                       TrackingStatus status, LocalDateTime timestamp) {
+        SlaWindow window = windows.computeIfAbsent(windowStart(timestamp), start -> new SlaWindow());
+        window.recordEvent(status);
+
+        if (previousStatus != null && previousTimestamp != null) {
+            long latencySeconds = Duration.between(previousTimestamp, timestamp).toSeconds();
+            window.recordTransition(new StatusTransition(previousStatus, status), latencySeconds);
+        }
+    }
+
+    public void merge(SlaAggregate other) {
+        other.windows.forEach((start, window) ->
+                windows.computeIfAbsent(start, s -> new SlaWindow()).merge(window));
+    }
+
+    /**
+     * Janelas que começam em [from, to), ordenadas.
+     */
+    public NavigableMap<Long, SlaWindow> windowsBetween(LocalDateTime from, LocalDateTime to) {
+        return windows.subMap(windowStart(from), true, toEpochSecond(to), false);
+    }
+
+    /**
+     * Remove as janelas que começaram antes do limite.
+     */
+    public void pruneBefore(LocalDateTime limit) {
+        windows.headMap(windowStart(limit)).clear();
+    }
+
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public Map<Long, SlaWindow> getWindows() {
+        return windows;
+    }
+
+    private long windowStart(LocalDateTime timestamp) {
+        return Math.floorDiv(toEpochSecond(timestamp), windowSeconds) * windowSeconds;
+    }
+
+    private static long toEpochSecond(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,41 @@
+package com.gwsistemas.tracking.analytics;
+
+import com.gwsistemas.tracking.enums.TrackingStatus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Estatísticas de uma janela de tempo: contagem de eventos por status
+ * e um histograma de latência por transição de status.
+ */
+public class SlaWindow {
+
+    private final AtomicLongArray statusCounts = new AtomicLongArray(TrackingStatus.values().length);
+    private final Map<StatusTransition, LatencyHistogram> transitions = new ConcurrentHashMap<>();
+
+    public void recordEvent(TrackingStatus status) {
+        statusCounts.incrementAndGet(status.ordinal());
+    }
+
+    public void recordTransition(StatusTransition transition, long latencySeconds) {
+        transitions.computeIfAbsent(transition, t -> new LatencyHistogram()).record(latencySeconds);
+    }
+
+    public void merge(SlaWindow other) {
+        for (int i = 0; i < statusCounts.length(); i++) {
+            statusCounts.addAndGet(i, other.statusCounts.get(i));
+        }
+        other.transitions.forEach((transition, histogram) ->
+                transitions.computeIfAbsent(transition, t -> new LatencyHistogram()).merge(histogram));
+    }
+
+    public long getStatusCount(TrackingStatus status) {
+        return statusCounts.get(status.ordinal());
+    }
+
+    public Map<StatusTransition, LatencyHistogram> getTransitions() {
+        return transitions;
+    }
+}
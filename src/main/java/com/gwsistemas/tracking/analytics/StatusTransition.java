@@ -0,0 +1,10 @@
+package com.gwsistemas.tracking.analytics;
+
+import com.gwsistemas.tracking.enums.TrackingStatus;
+
+/**
+ * Transição entre dois status consecutivos de uma encomenda.
+ * A latência da transição é o tempo que a encomenda passou no status de origem.
+ */
+public record StatusTransition(TrackingStatus from, TrackingStatus to) {
+}
@@ -0,0 +1,61 @@
+package com.gwsistemas.tracking.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Anel de hash consistente (imutável) que associa cada código de rastreio a um shard.
+ * Cada shard ocupa vários pontos do anel (nós virtuais), para distribuir melhor as chaves;
+ * ao adicionar ou remover um shard, só as chaves daquele trecho do anel mudam de lugar.
+ */
+public class ConsistentHashRing {
+
+    private final Set<String> shards;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("O anel de shards precisa de pelo menos um shard.");
+        }
+
+        this.shards = Collections.unmodifiableSet(new LinkedHashSet<>(shards));
+        for (String shard : this.shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shard + "#" + i), shard);
+            }
+        }
+    }
+
+    /**
+     * Retorna o shard responsável pela chave: o primeiro nó do anel a partir do hash da chave.
+     */
+    public String shardFor(String key) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public Set<String> getShards() {
+        return shards;
+    }
+
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.gwsistemas.tracking.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criação dos pools de conexão (Hikari) usados pelo roteamento de réplicas e de shards.
+ */
+final class DataSourcePools {
+
+    private DataSourcePools() {
+    }
+
+    static HikariDataSource create(String poolName, String driverClassName,
+                                   String url, String username, String password, int maximumPoolSize) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(poolName);
+        pool.setDriverClassName(driverClassName);
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setMaximumPoolSize(maximumPoolSize);
+        return pool;
+    }
+
+    static List<DataSource> replicas(String poolPrefix, String driverClassName,
+                                               List<ReplicaDataSourceProperties.Node> nodes) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            ReplicaDataSourceProperties.Node node = nodes.get(i);
+            HikariDataSource replica = create(poolPrefix + "-replica-" + i, driverClassName,
+                    node.getUrl(), node.getUsername(), node.getPassword(), node.getMaximumPoolSize());
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        return replicas;
+    }
+}
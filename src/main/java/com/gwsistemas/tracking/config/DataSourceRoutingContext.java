@@ -0,0 +1,108 @@
+package com.gwsistemas.tracking.config;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Contexto (por thread) usado pelo roteamento de DataSources:
+ * - força o uso do banco primário, mesmo dentro de transações somente leitura
+ *   (usado para garantir "read-your-writes" logo após uma escrita);
+ * - indica o shard da operação, pelo código de rastreio ou pelo nome do shard.
+ *
+ * O contexto precisa ser definido antes do primeiro comando SQL da transação.
+ */
+public final class DataSourceRoutingContext {
+
+    private static final ThreadLocal<Integer> PRIMARY_FORCED = ThreadLocal.withInitial(() -> 0);
+
+    private static final ThreadLocal<ShardBinding> SHARD = new ThreadLocal<>();
+
+    private static final Scope NOOP = () -> { };
+
+    private DataSourceRoutingContext() {
+    }
+
+    /**
+     * Força o primário até que o escopo retornado seja fechado.
+     * Escopos podem ser aninhados.
+     */
+    public static Scope forcePrimary() {
+        PRIMARY_FORCED.set(PRIMARY_FORCED.get() + 1);
+        return () -> {
+            int depth = PRIMARY_FORCED.get() - 1;
+            if (depth <= 0) {
+                PRIMARY_FORCED.remove();
+            } else {
+                PRIMARY_FORCED.set(depth);
+            }
+        };
+    }
+
+    /**
+     * Escopo vazio, para quando não é necessário forçar o primário.
+     */
+    public static Scope noop() {
+        return NOOP;
+    }
+
+    public static boolean isPrimaryForced() {
+        return PRIMARY_FORCED.get() > 0;
+    }
+
+    /**
+     * Direciona as operações da thread para o shard do código de rastreio.
+     */
+    public static Scope bindShardKey(String trackingCode) {
+        return bind(new ShardBinding(trackingCode, null));
+    }
+
+    /**
+     * Direciona as operações da thread para um shard específico (usado nas consultas entre shards).
+     * Com {@code null}, nada é alterado.
+     */
+    public static Scope bindShard(String shardName) {
+        if (shardName == null) {
+            return NOOP;
+        }
+        return bind(new ShardBinding(null, shardName));
+    }
+
+    public static ShardBinding currentShard() {
+        return SHARD.get();
+    }
+
+    /**
+     * Propaga o shard da thread atual para uma tarefa executada em outra thread.
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        ShardBinding binding = SHARD.get();
+        return () -> {
+            try (Scope ignored = binding != null ? bind(binding) : NOOP) {
+                return task.call();
+            }
+        };
+    }
+
+    private static Scope bind(ShardBinding binding) {
+        ShardBinding previous = SHARD.get();
+        SHARD.set(binding);
+        return () -> {
+            if (previous == null) {
+                SHARD.remove();
+            } else {
+                SHARD.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Shard da operação: ou a chave (código de rastreio), ou o nome do shard.
+     */
+    public record ShardBinding(String shardKey, String shardName) {
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,27 @@
+package com.gwsistemas.tracking.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+/**
+ * Registra o {@link ReadOnlyCacheModeJpaDialect} no EntityManagerFactory do Spring Boot
+ * (antes da inicialização, no lugar do dialeto padrão do HibernateJpaVendorAdapter).
+ */
+@Configuration
+public class JpaDialectConfig {
+
+    @Bean
+    public static BeanPostProcessor readOnlyCacheModeDialectPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof AbstractEntityManagerFactoryBean entityManagerFactory) {
+                    entityManagerFactory.setJpaDialect(new ReadOnlyCacheModeJpaDialect());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package com.gwsistemas.tracking.config;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.sql.SQLException;
+
+/**
+ * Dialeto JPA que, em transações readOnly, usa o cache de segundo nível só para leitura
+ * ({@link CacheMode#GET}). Essas transações podem ir para uma réplica atrasada, e o que
+ * elas carregam não deve ser colocado no cache compartilhado com as escritas.
+ * O modo anterior da sessão é restaurado no fim da transação.
+ */
+public class ReadOnlyCacheModeJpaDialect extends HibernateJpaDialect {
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        if (!definition.isReadOnly()) {
+            return transactionData;
+        }
+
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode previousCacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.GET);
+        return new ReadOnlyTransactionData(transactionData, session, previousCacheMode);
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (transactionData instanceof ReadOnlyTransactionData readOnlyData) {
+            readOnlyData.session().setCacheMode(readOnlyData.previousCacheMode());
+            super.cleanupTransaction(readOnlyData.delegate());
+            return;
+        }
+        super.cleanupTransaction(transactionData);
+    }
+
+    private record ReadOnlyTransactionData(Object delegate, Session session, CacheMode previousCacheMode) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.gwsistemas.tracking.config;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Guarda os códigos de rastreio escritos recentemente, para que as leituras
+ * seguintes desses códigos sejam feitas no primário (evitando o atraso de replicação).
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(ReplicaDataSourceProperties properties, ShardingProperties shardingProperties) {
+        this.enabled = properties.isEnabled() || shardingProperties.hasReplicas();
+        this.windowNanos = properties.getReadYourWritesWindow().toNanos();
+    }
+
+    /**
+     * Registra uma escrita no código de rastreio. A janela é renovada
+     * novamente após o commit, se houver transação ativa.
+     */
+    public void markWritten(String trackingCode) {
+        if (!enabled) {
+            return;
+        }
+
+        touch(trackingCode);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    touch(trackingCode);
+                }
+            });
+        }
+    }
+
+    /**
+     * Retorna um escopo que força o primário se o código foi escrito dentro da janela.
+     */
+    public DataSourceRoutingContext.Scope primaryScopeIfRecentlyWritten(String trackingCode) {
+        if (enabled && wasRecentlyWritten(trackingCode)) {
+            return DataSourceRoutingContext.forcePrimary();
+        }
+        return DataSourceRoutingContext.noop();
+    }
+
+    /**
+     * Igual a {@link #primaryScopeIfRecentlyWritten(String)}, para um conjunto de códigos.
+     */
+    public DataSourceRoutingContext.Scope primaryScopeIfAnyRecentlyWritten(Collection<String> trackingCodes) {
+        if (enabled && trackingCodes.stream().anyMatch(this::wasRecentlyWritten)) {
+            return DataSourceRoutingContext.forcePrimary();
+        }
+        return DataSourceRoutingContext.noop();
+    }
+
+    boolean wasRecentlyWritten(String trackingCode) {
+        Long expiresAt = recentWrites.get(trackingCode);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt - System.nanoTime() <= 0) {
+            recentWrites.remove(trackingCode, expiresAt);
+            return false;
+        }
+        return true;
+    }
+
+    private void touch(String trackingCode) {
+        long now = System.nanoTime();
+        recentWrites.put(trackingCode, now + windowNanos);
+
+        if (recentWrites.size() > PURGE_THRESHOLD) {
+            recentWrites.values().removeIf(expiresAt -> expiresAt - now <= 0);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.gwsistemas.tracking.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuração das réplicas de leitura (prefixo "tracking.datasource.replica").
+ * O primário continua configurado em "spring.datasource".
+ */
+@Data
+@ConfigurationProperties(prefix = "tracking.datasource.replica")
+public class ReplicaDataSourceProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Janela, após uma escrita em um código de rastreio, em que as leituras
+     * desse código continuam indo para o primário.
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    private List<Node> nodes = new ArrayList<>();
+
+    @Data
+    public static class Node {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,48 @@
+package com.gwsistemas.tracking.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Configura o roteamento leitura/escrita quando "tracking.datasource.replica.enabled=true".
+ * Sem essa propriedade, o DataSource padrão do Spring Boot é usado normalmente.
+ * Com sharding ativo, as réplicas são configuradas por shard ({@link ShardingDataSourceConfig}).
+ */
+@Configuration
+@ConditionalOnExpression("${tracking.datasource.replica.enabled:false} and !${tracking.sharding.enabled:false}")
+public class ReplicationDataSourceConfig {
+
+    @Bean
+    public ReplicationRoutingDataSource replicationRoutingDataSource(
+            DataSourceProperties primaryProperties,
+            ReplicaDataSourceProperties replicaProperties) {
+
+        HikariDataSource primary = primaryProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("tracking-primary");
+
+        List<DataSource> replicas = DataSourcePools.replicas("tracking",
+                primaryProperties.determineDriverClassName(), replicaProperties.getNodes());
+
+        return new ReplicationRoutingDataSource(primary, replicas);
+    }
+
+    /**
+     * DataSource exposto para o JPA/JDBC. O proxy "lazy" adia a obtenção da conexão
+     * até o primeiro comando SQL, quando o flag readOnly da transação já está definido.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicationRoutingDataSource replicationRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicationRoutingDataSource);
+    }
+}
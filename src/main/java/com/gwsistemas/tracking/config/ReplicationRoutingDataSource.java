@@ -0,0 +1,71 @@
+package com.gwsistemas.tracking.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource que envia transações somente leitura para o pool de réplicas
+ * (em round-robin) e todo o resto para o primário.
+ *
+ * Deve ser usado atrás de um {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy},
+ * para que a conexão só seja obtida depois que a transação já foi marcada como readOnly.
+ */
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+    private static final String REPLICA_PREFIX = "replica-";
+
+    private final List<DataSource> targets = new ArrayList<>();
+    private final List<String> replicaKeys = new ArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicationRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(PRIMARY, primary);
+        targets.add(primary);
+
+        for (int i = 0; i < replicas.size(); i++) {
+            String key = REPLICA_PREFIX + i;
+            targetDataSources.put(key, replicas.get(i));
+            replicaKeys.add(key);
+            targets.add(replicas.get(i));
+        }
+
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicaKeys.isEmpty()
+                || DataSourceRoutingContext.isPrimaryForced()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+
+        int index = Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.size());
+        return replicaKeys.get(index);
+    }
+
+    /**
+     * Fecha os pools de conexão do primário e das réplicas.
+     */
+    @Override
+    public void close() throws IOException {
+        for (DataSource target : targets) {
+            if (target instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.gwsistemas.tracking.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Executa consultas em todos os shards (ou nos shards de um conjunto de chaves) em paralelo.
+ * Sem sharding, a tarefa roda uma única vez, na própria thread.
+ *
+ * Cada tarefa roda em outra thread, com o shard já definido no {@link DataSourceRoutingContext}:
+ * a transação precisa ser aberta dentro da tarefa (por exemplo, com um TransactionTemplate).
+ */
+@Component
+public class ShardFanOut {
+
+    private final ShardRouter shardRouter;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ShardFanOut(ObjectProvider<ShardRouter> shardRouter) {
+        this.shardRouter = shardRouter.getIfAvailable();
+    }
+
+    public boolean isSharded() {
+        return shardRouter != null;
+    }
+
+    /**
+     * Shard de catálogo ({@code null} sem sharding).
+     */
+    public String catalogShard() {
+        return shardRouter != null ? shardRouter.getCatalogShard() : null;
+    }
+
+    /**
+     * Shards ativos (lista vazia sem sharding).
+     */
+    public List<String> activeShards() {
+        return shardRouter != null ? List.copyOf(shardRouter.getRing().getShards()) : List.of();
+    }
+
+    /**
+     * Se o código de rastreio pertence, no anel atual, ao shard da thread. Durante um resharding
+     * o mesmo registro pode existir em dois shards: as consultas entre shards usam isto
+     * (ou o id) para não devolver a cópia em duplicidade. Sem sharding, sempre true.
+     */
+    public boolean isOwnedByCurrentShard(String trackingCode) {
+        DataSourceRoutingContext.ShardBinding binding = DataSourceRoutingContext.currentShard();
+        if (shardRouter == null || binding == null || binding.shardName() == null) {
+            return true;
+        }
+        return binding.shardName().equals(shardRouter.shardFor(trackingCode));
+    }
+
+    /**
+     * Executa a tarefa em cada shard ativo e retorna os resultados na ordem dos shards.
+     */
+    public <T> List<T> onAllShards(Supplier<T> task) {
+        if (shardRouter == null) {
+            return List.of(task.get());
+        }
+
+        List<Future<T>> futures = new ArrayList<>();
+        for (String shard : activeShards()) {
+            futures.add(submitOnShard(shard, task));
+        }
+        return await(futures);
+    }
+
+    /**
+     * Agrupa os códigos de rastreio por shard e executa a tarefa em cada grupo.
+     */
+    public <T> List<T> onShardsFor(Collection<String> trackingCodes, Function<List<String>, T> task) {
+        if (shardRouter == null) {
+            return List.of(task.apply(List.copyOf(trackingCodes)));
+        }
+
+        Map<String, List<String>> byShard = new LinkedHashMap<>();
+        for (String trackingCode : trackingCodes) {
+            byShard.computeIfAbsent(shardRouter.shardFor(trackingCode), s -> new ArrayList<>()).add(trackingCode);
+        }
+
+        List<Future<T>> futures = new ArrayList<>();
+        byShard.forEach((shard, codes) -> futures.add(submitOnShard(shard, () -> task.apply(codes))));
+        return await(futures);
+    }
+
+    /**
+     * Executa a tarefa em um shard específico, em outra thread.
+     */
+    public <T> Future<T> submitOnShard(String shard, Supplier<T> task) {
+        return executor.submit(() -> {
+            try (DataSourceRoutingContext.Scope ignored = DataSourceRoutingContext.bindShard(shard)) {
+                return task.get();
+            }
+        });
+    }
+
+    private <T> List<T> await(List<Future<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consulta entre shards interrompida.", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Falha na consulta entre shards.", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
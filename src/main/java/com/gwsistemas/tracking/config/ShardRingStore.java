@@ -0,0 +1,124 @@
+package com.gwsistemas.tracking.config;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Acesso ao estado do anel (tb_shard_ring) e às confirmações das instâncias (tb_shard_ring_ack)
+ * no shard de catálogo. Usa o DataSource do catálogo diretamente, fora do roteamento.
+ */
+public class ShardRingStore {
+
+    private static final String SELECT_SQL =
+            "SELECT version, active_shards, target_shards, previous_shards, owner_instance FROM tb_shard_ring WHERE id = 1";
+
+    private static final String INSERT_SQL = """
+            INSERT INTO tb_shard_ring (id, version, active_shards, target_shards, previous_shards, owner_instance)
+            VALUES (1, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String UPDATE_SQL = """
+            UPDATE tb_shard_ring
+            SET version = ?, active_shards = ?, target_shards = ?, previous_shards = ?, owner_instance = ?
+            WHERE id = 1 AND version = ?
+            """;
+
+    private static final String UPSERT_ACK_SQL = """
+            INSERT INTO tb_shard_ring_ack (instance_id, acked_version, heartbeat_at)
+            VALUES (?, ?, CURRENT_TIMESTAMP)
+            ON DUPLICATE KEY UPDATE acked_version = VALUES(acked_version), heartbeat_at = CURRENT_TIMESTAMP
+            """;
+
+    private static final String LIVE_INSTANCE_SQL = """
+            SELECT COUNT(*) FROM tb_shard_ring_ack
+            WHERE instance_id = ? AND heartbeat_at >= TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP)
+            """;
+
+    private static final String LIVE_ACKS_SQL = """
+            SELECT acked_version FROM tb_shard_ring_ack
+            WHERE heartbeat_at >= TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ShardRingStore(DataSource catalog) {
+        this.jdbcTemplate = new JdbcTemplate(catalog);
+    }
+
+    public Optional<PersistedRing> load() {
+        return jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new PersistedRing(rs.getLong(1),
+                        split(rs.getString(2)), split(rs.getString(3)), split(rs.getString(4)), rs.getString(5)))
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Grava um novo estado se a versão gravada ainda for {@code expectedVersion}
+     * (0 quando ainda não existe estado gravado).
+     *
+     * @return false se outro processo alterou o estado antes.
+     */
+    public boolean compareAndSet(long expectedVersion, PersistedRing newState) {
+        String active = join(newState.active());
+        String target = join(newState.target());
+        String previous = join(newState.previous());
+
+        if (jdbcTemplate.update(UPDATE_SQL, newState.version(), active, target, previous,
+                newState.owner(), expectedVersion) == 1) {
+            return true;
+        }
+        if (expectedVersion != 0) {
+            return false;
+        }
+        try {
+            return jdbcTemplate.update(INSERT_SQL, newState.version(), active, target, previous, newState.owner()) == 1;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Registra que a instância está na versão informada, sem transações de versões anteriores.
+     */
+    public void ack(String instanceId, long version) {
+        jdbcTemplate.update(UPSERT_ACK_SQL, instanceId, version);
+    }
+
+    /**
+     * Versões confirmadas pelas instâncias que deram sinal de vida dentro do prazo.
+     */
+    public List<Long> liveAckedVersions(Duration heartbeatTimeout) {
+        return jdbcTemplate.queryForList(LIVE_ACKS_SQL, Long.class, -heartbeatTimeout.toSeconds());
+    }
+
+    /**
+     * Se a instância deu sinal de vida dentro do prazo.
+     */
+    public boolean isLive(String instanceId, Duration heartbeatTimeout) {
+        Integer count = jdbcTemplate.queryForObject(LIVE_INSTANCE_SQL, Integer.class, instanceId, -heartbeatTimeout.toSeconds());
+        return count != null && count > 0;
+    }
+
+    private static List<String> split(String shards) {
+        return shards != null ? Arrays.asList(shards.split(",")) : null;
+    }
+
+    private static String join(Collection<String> shards) {
+        return shards != null ? String.join(",", shards) : null;
+    }
+
+    /**
+     * Estado gravado do anel (ver {@link ShardRouter.RingState}); target e previous podem ser nulos.
+     * owner é a instância que conduz o resharding em andamento.
+     */
+    public record PersistedRing(long version, List<String> active, List<String> target, List<String> previous,
+                                String owner) {
+    }
+}
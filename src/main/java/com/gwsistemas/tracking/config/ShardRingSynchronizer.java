@@ -0,0 +1,61 @@
+package com.gwsistemas.tracking.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Mantém o anel desta instância igual ao gravado em tb_shard_ring: lê o estado periodicamente
+ * e confirma (em tb_shard_ring_ack) a versão em uso, depois que as transações das versões
+ * anteriores terminaram. O resharding espera essas confirmações antes de cada etapa.
+ */
+@Component
+@ConditionalOnProperty(name = "tracking.sharding.enabled", havingValue = "true")
+public class ShardRingSynchronizer {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRingSynchronizer.class);
+
+    private final ShardRouter shardRouter;
+    private final ShardRingStore ringStore;
+    private final EntityManagerFactory entityManagerFactory;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public ShardRingSynchronizer(ShardRouter shardRouter, ShardRingStore ringStore, EntityManagerFactory entityManagerFactory) {
+        this.shardRouter = shardRouter;
+        this.ringStore = ringStore;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostConstruct
+    public void init() {
+        refresh();
+        log.info("Anel de shards na versão {}: {}", shardRouter.getState().version(), shardRouter.getRing().getShards());
+    }
+
+    @Scheduled(fixedDelayString = "${tracking.sharding.ring-refresh-interval:2s}")
+    public void refresh() {
+        try {
+            Set<String> activeShards = shardRouter.getRing().getShards();
+            ringStore.load().ifPresent(ring -> shardRouter.adopt(ring.version(), ring.active(), ring.target(), ring.previous()));
+            if (!shardRouter.getRing().getShards().equals(activeShards)) {
+                // As encomendas que mudaram de shard podem estar no cache com dados do shard antigo
+                entityManagerFactory.getCache().evictAll();
+            }
+            ringStore.ack(instanceId, shardRouter.drainedVersion());
+        } catch (DataAccessException e) {
+            log.warn("Não foi possível sincronizar o anel de shards com tb_shard_ring", e);
+        }
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+}
@@ -0,0 +1,150 @@
+package com.gwsistemas.tracking.config;
+
+import com.gwsistemas.tracking.exception.ShardMovingException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mantém o estado do anel de shards nesta instância. O estado é versionado e gravado
+ * no shard de catálogo (tb_shard_ring); todas as instâncias o leem periodicamente
+ * ({@link ShardRingSynchronizer}) e o resharding ({@link com.gwsistemas.tracking.service.ReshardingService})
+ * só avança quando todas confirmaram a nova versão.
+ *
+ * Também conta as transações em andamento por versão do anel, para que a instância só confirme
+ * uma versão depois que as transações iniciadas nas versões anteriores terminaram.
+ */
+public class ShardRouter {
+
+    private final List<String> configuredShards;
+    private final int virtualNodes;
+    private final AtomicReference<RingState> state = new AtomicReference<>();
+    private final ConcurrentSkipListMap<Long, AtomicInteger> inFlight = new ConcurrentSkipListMap<>();
+
+    public ShardRouter(List<String> configuredShards, List<String> activeShards, int virtualNodes) {
+        this.configuredShards = List.copyOf(configuredShards);
+        this.virtualNodes = virtualNodes;
+        this.state.set(new RingState(0, newRing(activeShards), null, null));
+    }
+
+    public String shardFor(String trackingCode) {
+        return state.get().ring().shardFor(trackingCode);
+    }
+
+    public ConsistentHashRing getRing() {
+        return state.get().ring();
+    }
+
+    public RingState getState() {
+        return state.get();
+    }
+
+    /**
+     * Shard usado pelas operações que não têm código de rastreio (o primeiro configurado).
+     */
+    public String getCatalogShard() {
+        return configuredShards.get(0);
+    }
+
+    public List<String> getConfiguredShards() {
+        return configuredShards;
+    }
+
+    /**
+     * Cria um anel com os shards informados (todos precisam estar configurados).
+     *
+     * @throws IllegalArgumentException se algum shard não estiver configurado.
+     */
+    public ConsistentHashRing newRing(List<String> shards) {
+        for (String shard : shards) {
+            if (!configuredShards.contains(shard)) {
+                throw new IllegalArgumentException("Shard não configurado: " + shard);
+            }
+        }
+        return new ConsistentHashRing(shards, virtualNodes);
+    }
+
+    /**
+     * Adota o estado lido de tb_shard_ring, se for mais novo que o atual.
+     */
+    public void adopt(long version, List<String> active, List<String> target, List<String> previous) {
+        RingState current = state.get();
+        if (version <= current.version()) {
+            return;
+        }
+
+        RingState newState = new RingState(version, newRing(active),
+                target != null ? newRing(target) : null,
+                previous != null ? newRing(previous) : null);
+        state.accumulateAndGet(newState, (old, candidate) -> candidate.version() > old.version() ? candidate : old);
+    }
+
+    /**
+     * Registra o início de uma transação no código de rastreio e retorna o shard dela.
+     * A transação fica associada à versão atual do anel até {@link #exitTransaction(long)}.
+     *
+     * @throws ShardMovingException se for uma escrita em um código que está mudando de shard.
+     */
+    public Entry enterTransaction(String trackingCode, boolean readOnly) {
+        while (true) {
+            RingState current = state.get();
+            AtomicInteger counter = inFlight.computeIfAbsent(current.version(), v -> new AtomicInteger());
+            counter.incrementAndGet();
+
+            // A versão mudou enquanto a transação era registrada: tenta de novo na versão nova
+            if (state.get() != current) {
+                counter.decrementAndGet();
+                continue;
+            }
+
+            if (!readOnly && current.isMoving(trackingCode)) {
+                counter.decrementAndGet();
+                throw new ShardMovingException("A encomenda " + trackingCode
+                        + " está sendo movida para outro shard. Tente novamente em instantes.");
+            }
+            return new Entry(current.ring().shardFor(trackingCode), current.version());
+        }
+    }
+
+    public void exitTransaction(long version) {
+        AtomicInteger counter = inFlight.get(version);
+        if (counter != null) {
+            counter.decrementAndGet();
+        }
+    }
+
+    /**
+     * Maior versão que esta instância pode confirmar: a atual, ou a versão mais antiga
+     * que ainda tem transações em andamento.
+     */
+    public long drainedVersion() {
+        long current = state.get().version();
+        for (Map.Entry<Long, AtomicInteger> entry : inFlight.headMap(current).entrySet()) {
+            if (entry.getValue().get() > 0) {
+                return entry.getKey();
+            }
+            inFlight.remove(entry.getKey(), entry.getValue());
+        }
+        return current;
+    }
+
+    /**
+     * Estado do anel.
+     *
+     * @param ring Anel usado para rotear as operações.
+     * @param target Anel de destino de um resharding em andamento (escritas nos códigos que mudam são recusadas).
+     * @param previous Anel anterior, enquanto as linhas movidas ainda não foram removidas dos shards de origem.
+     */
+    public record RingState(long version, ConsistentHashRing ring, ConsistentHashRing target, ConsistentHashRing previous) {
+
+        public boolean isMoving(String trackingCode) {
+            return target != null && !ring.shardFor(trackingCode).equals(target.shardFor(trackingCode));
+        }
+    }
+
+    public record Entry(String shard, long version) {
+    }
+}
@@ -0,0 +1,64 @@
+package com.gwsistemas.tracking.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DataSource que envia cada operação para o shard indicado no {@link DataSourceRoutingContext}.
+ * Sem shard no contexto, usa o shard de catálogo. Cada shard pode ser, por sua vez,
+ * um {@link ReplicationRoutingDataSource} (primário + réplicas).
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private final ShardRouter shardRouter;
+    private final Map<String, DataSource> shards;
+
+    public ShardRoutingDataSource(ShardRouter shardRouter, Map<String, DataSource> shards) {
+        this.shardRouter = shardRouter;
+        this.shards = shards;
+
+        setTargetDataSources(new HashMap<>(shards));
+        setDefaultTargetDataSource(shards.get(shardRouter.getCatalogShard()));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String shard = currentShard();
+        ShardTransactionGuard.connectionAcquired(shard);
+        return shard;
+    }
+
+    private String currentShard() {
+        DataSourceRoutingContext.ShardBinding binding = DataSourceRoutingContext.currentShard();
+        if (binding == null) {
+            return shardRouter.getCatalogShard();
+        }
+        if (binding.shardName() != null) {
+            return binding.shardName();
+        }
+        return shardRouter.shardFor(binding.shardKey());
+    }
+
+    public DataSource getShard(String name) {
+        return shards.get(name);
+    }
+
+    /**
+     * Fecha os pools de conexão de todos os shards.
+     */
+    @Override
+    public void close() throws IOException {
+        for (DataSource shard : shards.values()) {
+            if (shard instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
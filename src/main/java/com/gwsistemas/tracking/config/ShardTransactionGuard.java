@@ -0,0 +1,86 @@
+package com.gwsistemas.tracking.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Direciona a transação atual para o shard do código de rastreio, até o fim da transação
+ * (incluindo o flush e o commit). Sem sharding ou sem transação ativa, não altera nada.
+ *
+ * Durante um resharding, escritas em códigos que estão mudando de shard são recusadas
+ * ({@link com.gwsistemas.tracking.exception.ShardMovingException}).
+ *
+ * Precisa ser chamado antes do primeiro comando SQL da transação: depois disso a conexão
+ * (e o shard) já foram escolhidos sem a versão do anel registrada, e a chamada falha.
+ * Chamadas repetidas com o mesmo código na mesma transação não fazem nada.
+ */
+@Component
+public class ShardTransactionGuard {
+
+    private static final String BINDING_RESOURCE = ShardTransactionGuard.class.getName() + ".BINDING";
+    private static final String CONNECTION_RESOURCE = ShardTransactionGuard.class.getName() + ".CONNECTION";
+
+    private final ShardRouter shardRouter;
+
+    public ShardTransactionGuard(ObjectProvider<ShardRouter> shardRouter) {
+        this.shardRouter = shardRouter.getIfAvailable();
+    }
+
+    /**
+     * @throws IllegalStateException se a transação já obteve uma conexão, ou já foi direcionada para outro código.
+     */
+    public void bindForTransaction(String trackingCode) {
+        if (shardRouter == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        Object boundCode = TransactionSynchronizationManager.getResource(BINDING_RESOURCE);
+        if (boundCode != null) {
+            if (boundCode.equals(trackingCode)) {
+                return;
+            }
+            throw new IllegalStateException("A transação já está direcionada para o shard do código " + boundCode
+                    + " e não pode ser usada para o código " + trackingCode + ".");
+        }
+
+        Object connectedShard = TransactionSynchronizationManager.getResource(CONNECTION_RESOURCE);
+        if (connectedShard != null) {
+            throw new IllegalStateException("A transação já obteve uma conexão no shard " + connectedShard
+                    + " antes de ser direcionada para o código " + trackingCode + ".");
+        }
+
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        ShardRouter.Entry entry = shardRouter.enterTransaction(trackingCode, readOnly);
+        DataSourceRoutingContext.Scope scope = DataSourceRoutingContext.bindShard(entry.shard());
+        TransactionSynchronizationManager.bindResource(BINDING_RESOURCE, trackingCode);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(BINDING_RESOURCE);
+                scope.close();
+                shardRouter.exitTransaction(entry.version());
+            }
+        });
+    }
+
+    /**
+     * Registra que a transação atual obteve uma conexão no shard (chamado pelo {@link ShardRoutingDataSource}).
+     */
+    static void connectionAcquired(String shard) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(CONNECTION_RESOURCE)) {
+            return;
+        }
+
+        TransactionSynchronizationManager.bindResource(CONNECTION_RESOURCE, shard);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(CONNECTION_RESOURCE);
+            }
+        });
+    }
+}
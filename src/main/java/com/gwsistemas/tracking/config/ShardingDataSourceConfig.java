@@ -0,0 +1,104 @@
+package com.gwsistemas.tracking.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Configura o sharding por código de rastreio quando "tracking.sharding.enabled=true".
+ * Cada código de rastreio é associado a um shard por hash consistente; a encomenda
+ * e as suas ocorrências ficam sempre no mesmo shard.
+ */
+@Configuration
+@ConditionalOnProperty(name = "tracking.sharding.enabled", havingValue = "true")
+public class ShardingDataSourceConfig {
+
+    @Bean
+    public ShardRouter shardRouter(ShardingProperties properties) {
+        validate(properties);
+
+        List<String> configured = properties.getShards().stream()
+                .map(ShardingProperties.Shard::getName)
+                .toList();
+        List<String> active = properties.getShards().stream()
+                .filter(ShardingProperties.Shard::isActive)
+                .map(ShardingProperties.Shard::getName)
+                .toList();
+
+        return new ShardRouter(configured, active, properties.getVirtualNodes());
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(ShardingProperties properties,
+                                                         ShardRouter shardRouter,
+                                                         DataSourceProperties defaults) {
+        String driverClassName = defaults.determineDriverClassName();
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            String poolName = "tracking-" + shard.getName();
+            HikariDataSource primary = DataSourcePools.create(poolName, driverClassName,
+                    shard.getUrl(), shard.getUsername(), shard.getPassword(), shard.getMaximumPoolSize());
+            // Ids intercalados entre os shards: nunca colidem, nem depois de mover linhas no resharding
+            primary.setConnectionInitSql("SET SESSION auto_increment_increment = " + properties.getIdStride()
+                    + ", auto_increment_offset = " + shard.getIdOffset());
+
+            if (shard.getReplicas().isEmpty()) {
+                shards.put(shard.getName(), primary);
+            } else {
+                List<DataSource> replicas = DataSourcePools.replicas(poolName, driverClassName, shard.getReplicas());
+                shards.put(shard.getName(), new ReplicationRoutingDataSource(primary, replicas));
+            }
+        }
+
+        return new ShardRoutingDataSource(shardRouter, shards);
+    }
+
+    /**
+     * Estado do anel no shard de catálogo (o anel da configuração vale só até o primeiro resharding).
+     */
+    @Bean
+    public ShardRingStore shardRingStore(ShardRoutingDataSource shardRoutingDataSource, ShardRouter shardRouter) {
+        return new ShardRingStore(shardRoutingDataSource.getShard(shardRouter.getCatalogShard()));
+    }
+
+    /**
+     * DataSource exposto para o JPA/JDBC. O proxy "lazy" adia a obtenção da conexão
+     * até o primeiro comando SQL, quando o shard e o flag readOnly já estão definidos.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    private void validate(ShardingProperties properties) {
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("Sharding ativo sem shards em tracking.sharding.shards.");
+        }
+
+        Set<String> names = new HashSet<>();
+        Set<Integer> offsets = new HashSet<>();
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            if (!names.add(shard.getName())) {
+                throw new IllegalStateException("Nome de shard duplicado: " + shard.getName());
+            }
+            if (shard.getIdOffset() < 1 || shard.getIdOffset() > properties.getIdStride()
+                    || !offsets.add(shard.getIdOffset())) {
+                throw new IllegalStateException("id-offset inválido ou duplicado no shard " + shard.getName()
+                        + " (deve ser único e entre 1 e " + properties.getIdStride() + ").");
+            }
+        }
+    }
+}
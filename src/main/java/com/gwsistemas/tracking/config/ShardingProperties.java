@@ -0,0 +1,77 @@
+package com.gwsistemas.tracking.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuração do sharding por código de rastreio (prefixo "tracking.sharding").
+ * O primeiro shard da lista é o shard de catálogo e a ordem não deve ser alterada.
+ */
+@Data
+@ConfigurationProperties(prefix = "tracking.sharding")
+public class ShardingProperties {
+
+    private boolean enabled = false;
+
+    private int virtualNodes = 128;
+
+    /**
+     * auto_increment_increment de todos os shards (número máximo de shards).
+     * Cada shard gera ids com o próprio offset, então os ids nunca colidem entre shards.
+     */
+    private int idStride = 64;
+
+    /**
+     * Intervalo em que cada instância lê o estado do anel em tb_shard_ring e confirma a versão.
+     */
+    private Duration ringRefreshInterval = Duration.ofSeconds(2);
+
+    /**
+     * Instâncias sem confirmação há mais que isso são consideradas paradas (não bloqueiam o resharding).
+     */
+    private Duration instanceHeartbeatTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Espera máxima, em cada etapa do resharding, pela confirmação de todas as instâncias.
+     */
+    private Duration reshardAckTimeout = Duration.ofMinutes(2);
+
+    private int reshardBatchSize = 500;
+
+    private List<Shard> shards = new ArrayList<>();
+
+    public boolean hasReplicas() {
+        return enabled && shards.stream().anyMatch(shard -> !shard.getReplicas().isEmpty());
+    }
+
+    @Data
+    public static class Shard {
+
+        private String name;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+
+        /**
+         * auto_increment_offset do shard (entre 1 e idStride, único por shard).
+         */
+        private int idOffset;
+
+        /**
+         * Se o shard faz parte do anel na primeira inicialização
+         * (depois, vale o anel salvo em tb_shard_ring pelo resharding).
+         */
+        private boolean active = true;
+
+        private List<ReplicaDataSourceProperties.Node> replicas = new ArrayList<>();
+    }
+}
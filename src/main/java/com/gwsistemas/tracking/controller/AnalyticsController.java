@@ -0,0 +1,58 @@
+package com.gwsistemas.tracking.controller;
+
+import com.gwsistemas.tracking.dto.output.SlaWindowDTO;
+import com.gwsistemas.tracking.service.DeliveryAnalyticsService;
+import com.gwsistemas.tracking.service.SlaBackfillService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/analytics/sla")
+public class AnalyticsController {
+
+    private final DeliveryAnalyticsService deliveryAnalyticsService;
+    private final SlaBackfillService slaBackfillService;
+
+    public AnalyticsController(DeliveryAnalyticsService deliveryAnalyticsService, SlaBackfillService slaBackfillService) {
+        this.deliveryAnalyticsService = deliveryAnalyticsService;
+        this.slaBackfillService = slaBackfillService;
+    }
+
+    /**
+     * Endpoint para Consultar os indicadores de SLA (p50/p90/p99 por transição) de cada janela.
+     * Mapeado para: GET /api/analytics/sla?from=...&to=...
+     */
+    @GetMapping
+    public ResponseEntity<List<SlaWindowDTO>> getSlaWindows(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+
+        return ResponseEntity.ok(deliveryAnalyticsService.getWindows(from, to));
+    }
+
+    /**
+     * Endpoint para Consultar os indicadores de SLA do período inteiro (janelas mescladas).
+     * Mapeado para: GET /api/analytics/sla/summary?from=...&to=...
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<SlaWindowDTO> getSlaSummary(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+
+        return ResponseEntity.ok(deliveryAnalyticsService.getSummary(from, to));
+    }
+
+    /**
+     * Endpoint para Reconstruir os indicadores a partir do histórico (em segundo plano).
+     * Mapeado para: POST /api/analytics/sla/backfill
+     */
+    @PostMapping("/backfill")
+    public ResponseEntity<Void> startBackfill() {
+        slaBackfillService.startBackfill();
+        return ResponseEntity.accepted().build();
+    }
+}
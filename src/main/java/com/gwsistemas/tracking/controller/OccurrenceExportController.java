@@ -0,0 +1,43 @@
+package com.gwsistemas.tracking.controller;
+
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import com.gwsistemas.tracking.service.OccurrenceExportService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/occurrences")
+public class OccurrenceExportController {
+
+    private final OccurrenceExportService occurrenceExportService;
+
+    public OccurrenceExportController(OccurrenceExportService occurrenceExportService) {
+        this.occurrenceExportService = occurrenceExportService;
+    }
+
+    /**
+     * Endpoint para Exportar as ocorrências de uma janela de tempo em NDJSON.
+     * Mapeado para: GET /api/occurrences/export?from=...&to=...&status=...
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportOccurrences(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) TrackingStatus status) {
+
+        occurrenceExportService.validateWindow(from, to);
+
+        StreamingResponseBody body = out -> occurrenceExportService.export(from, to, status, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
@@ -0,0 +1,55 @@
+package com.gwsistemas.tracking.controller;
+
+import com.gwsistemas.tracking.config.ShardRouter;
+import com.gwsistemas.tracking.dto.input.ReshardRequestDTO;
+import com.gwsistemas.tracking.dto.output.ShardTopologyDTO;
+import com.gwsistemas.tracking.service.ReshardingService;
+import jakarta.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/shards")
+@ConditionalOnProperty(name = "tracking.sharding.enabled", havingValue = "true")
+public class ShardAdminController {
+
+    private final ShardRouter shardRouter;
+    private final ReshardingService reshardingService;
+
+    public ShardAdminController(ShardRouter shardRouter, ReshardingService reshardingService) {
+        this.shardRouter = shardRouter;
+        this.reshardingService = reshardingService;
+    }
+
+    /**
+     * Endpoint para Consultar os shards configurados e o anel ativo.
+     * Mapeado para: GET /api/admin/shards
+     */
+    @GetMapping
+    public ResponseEntity<ShardTopologyDTO> getTopology() {
+        ShardRouter.RingState state = shardRouter.getState();
+        ShardTopologyDTO topology = new ShardTopologyDTO(
+                shardRouter.getConfiguredShards(),
+                List.copyOf(state.ring().getShards()),
+                state.version(),
+                state.target() != null ? List.copyOf(state.target().getShards()) : null,
+                shardRouter.getCatalogShard(),
+                reshardingService.isRunning(),
+                reshardingService.getLastResult());
+
+        return ResponseEntity.ok(topology);
+    }
+
+    /**
+     * Endpoint para Migrar as encomendas para um novo conjunto de shards (em segundo plano).
+     * Mapeado para: POST /api/admin/shards/reshard
+     */
+    @PostMapping("/reshard")
+    public ResponseEntity<Void> startResharding(@Valid @RequestBody ReshardRequestDTO dto) {
+        reshardingService.startResharding(dto.getShards());
+        return ResponseEntity.accepted().build();
+    }
+}
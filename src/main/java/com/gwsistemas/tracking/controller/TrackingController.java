@@ -2,22 +2,50 @@ package com.gwsistemas.tracking.controller;
 
 import com.gwsistemas.tracking.dto.input.OccurrenceCreateDTO;
 import com.gwsistemas.tracking.dto.input.OrderCreateDTO;
+import com.gwsistemas.tracking.dto.input.OrderLookupDTO;
+import com.gwsistemas.tracking.dto.output.CustomerShipmentPageDTO;
 import com.gwsistemas.tracking.dto.output.OccurrenceDTO;
 import com.gwsistemas.tracking.dto.output.OrderDetailsDTO;
+import com.gwsistemas.tracking.enums.IdempotentOperation;
+import com.gwsistemas.tracking.service.CustomerShipmentService;
+import com.gwsistemas.tracking.service.IdempotencyService;
+import com.gwsistemas.tracking.service.OrderLookupService;
 import com.gwsistemas.tracking.service.TrackingService;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/orders")
 public class TrackingController {
 
     private final TrackingService trackingService;
+    private final IdempotencyService idempotencyService;
+    private final OrderLookupService orderLookupService;
+    private final CustomerShipmentService customerShipmentService;
 
-    public TrackingController(TrackingService trackingService) {
+    public TrackingController(TrackingService trackingService, IdempotencyService idempotencyService,
+                              OrderLookupService orderLookupService, CustomerShipmentService customerShipmentService) {
         this.trackingService = trackingService;
+        this.idempotencyService = idempotencyService;
+        this.orderLookupService = orderLookupService;
+        this.customerShipmentService = customerShipmentService;
+    }
+
+    /**
+     * Endpoint para Listar as encomendas de um cliente com o status atual (paginado por cursor).
+     * Mapeado para: GET /api/orders?customerName=...&cursor=...&size=...
+     */
+    @GetMapping
+    public ResponseEntity<CustomerShipmentPageDTO> listCustomerShipments(
+            @RequestParam String customerName,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        return ResponseEntity.ok(customerShipmentService.listShipments(customerName, cursor, size));
     }
 
     /**
@@ -35,25 +63,46 @@ public class TrackingController {
     /**
      * Endpoint para Registrar nova Ocorrência.
      * Mapeado para: POST /api/orders/{trackingCode}/events
+     * Aceita o header opcional "Idempotency-Key" (retries recebem a resposta original).
      */
     @PostMapping("/{trackingCode}/events")
     public ResponseEntity<OccurrenceDTO> registerNewOccurrence(
             @PathVariable String trackingCode,
+            @RequestHeader(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody OccurrenceCreateDTO dto) {
 
-        OccurrenceDTO newOccurrence = trackingService.registerNewOccurrence(trackingCode, dto);
-        return ResponseEntity.status(HttpStatus.CREATED).body(newOccurrence);
+        return idempotencyService.execute(idempotencyKey, IdempotentOperation.REGISTER_OCCURRENCE,
+                trackingCode, dto, OccurrenceDTO.class, () -> {
+                    OccurrenceDTO newOccurrence = trackingService.registerNewOccurrence(trackingCode, dto);
+                    return ResponseEntity.status(HttpStatus.CREATED).body(newOccurrence);
+                });
     }
 
     /**
      * Endpoint para Cadastrar uma nova Encomenda.
      * Mapeado para: POST /api/orders
+     * Aceita o header opcional "Idempotency-Key" (retries recebem a resposta original).
      */
     @PostMapping
     public ResponseEntity<OrderDetailsDTO> createNewOrder(
+            @RequestHeader(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody OrderCreateDTO dto) {
 
-        OrderDetailsDTO newOrder = trackingService.createOrder(dto);
-        return ResponseEntity.status(HttpStatus.CREATED).body(newOrder);
+        return idempotencyService.execute(idempotencyKey, IdempotentOperation.CREATE_ORDER,
+                dto.getTrackingCode(), dto, OrderDetailsDTO.class, () -> {
+                    OrderDetailsDTO newOrder = trackingService.createOrder(dto);
+                    return ResponseEntity.status(HttpStatus.CREATED).body(newOrder);
+                });
+    }
+
+    /**
+     * Endpoint para Consultar várias encomendas de uma vez.
+     * Mapeado para: POST /api/orders/lookup
+     */
+    @PostMapping("/lookup")
+    public ResponseEntity<List<OrderDetailsDTO>> lookupOrders(
+            @Valid @RequestBody OrderLookupDTO dto) {
+
+        return ResponseEntity.ok(orderLookupService.getTrackingDetails(dto.getTrackingCodes()));
     }
 }
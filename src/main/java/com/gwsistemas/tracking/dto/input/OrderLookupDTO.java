@@ -0,0 +1,25 @@
+package com.gwsistemas.tracking.dto.input;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO usado para consultar várias encomendas de uma vez.
+ * Contém a lista de códigos de rastreamento.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderLookupDTO {
+
+    @NotEmpty(message = "A lista de códigos de rastreamento não pode estar vazia")
+    @Size(max = 500, message = "A consulta aceita no máximo 500 códigos de rastreamento")
+    private List<String> trackingCodes;
+
+}
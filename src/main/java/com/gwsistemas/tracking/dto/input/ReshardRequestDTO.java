@@ -0,0 +1,23 @@
+package com.gwsistemas.tracking.dto.input;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO usado para iniciar um resharding.
+ * Contém os nomes dos shards que devem compor o novo anel.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReshardRequestDTO {
+
+    @NotEmpty(message = "A lista de shards é obrigatória.")
+    private List<String> shards;
+
+}
@@ -0,0 +1,23 @@
+package com.gwsistemas.tracking.dto.output;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO usado para retornar uma página da listagem de encomendas de um cliente.
+ * Contém as encomendas e o cursor da próxima página (nulo na última página).
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CustomerShipmentPageDTO {
+
+    private List<OrderSummaryDTO> items;
+
+    private Long nextCursor;
+
+}
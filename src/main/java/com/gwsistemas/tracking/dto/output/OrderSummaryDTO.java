@@ -0,0 +1,30 @@
+package com.gwsistemas.tracking.dto.output;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO usado na listagem de encomendas de um cliente.
+ * Contém os dados da encomenda e o status atual (última ocorrência).
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderSummaryDTO {
+
+    private String trackingCode;
+
+    private String deliveryAddress;
+
+    private TrackingStatus currentStatus;
+
+    @JsonFormat(pattern = "dd/MM/yyyy HH:mm")
+    private LocalDateTime lastUpdate;
+
+}
@@ -0,0 +1,34 @@
+package com.gwsistemas.tracking.dto.output;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO usado para retornar a topologia de shards.
+ * Contém os shards configurados, o anel ativo (com a versão e o destino de um resharding
+ * em andamento) e o estado do resharding.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShardTopologyDTO {
+
+    private List<String> configuredShards;
+
+    private List<String> activeShards;
+
+    private long ringVersion;
+
+    private List<String> targetShards;
+
+    private String catalogShard;
+
+    private boolean reshardingRunning;
+
+    private String lastReshardingResult;
+
+}
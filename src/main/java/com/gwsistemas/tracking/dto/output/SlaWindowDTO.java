@@ -0,0 +1,40 @@
+package com.gwsistemas.tracking.dto.output;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO usado para retornar os indicadores de SLA de uma janela de tempo.
+ * Contém a contagem de eventos por status, a taxa de "NÃO ENTREGUE"
+ * e as latências por transição de status.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SlaWindowDTO {
+
+    @JsonFormat(pattern = "dd/MM/yyyy HH:mm")
+    private LocalDateTime windowStart;
+
+    @JsonFormat(pattern = "dd/MM/yyyy HH:mm")
+    private LocalDateTime windowEnd;
+
+    private Map<TrackingStatus, Long> statusCounts;
+
+    //NAO_ENTREGUE / (ENTREGUE + NAO_ENTREGUE) na janela
+    private double naoEntregueRate;
+
+    private List<TransitionLatencyDTO> transitions;
+
+    //false até o histórico ser reconstruído a partir do banco (após a inicialização)
+    private boolean historyComplete;
+
+}
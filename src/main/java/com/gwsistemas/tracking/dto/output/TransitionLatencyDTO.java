@@ -0,0 +1,30 @@
+package com.gwsistemas.tracking.dto.output;
+
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO usado para retornar a latência de uma transição de status em uma janela.
+ * Os percentis são o tempo (em segundos) passado no status de origem.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransitionLatencyDTO {
+
+    private TrackingStatus fromStatus;
+
+    private TrackingStatus toStatus;
+
+    private long count;
+
+    private long p50Seconds;
+
+    private long p90Seconds;
+
+    private long p99Seconds;
+
+}
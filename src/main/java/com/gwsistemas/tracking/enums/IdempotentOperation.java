@@ -0,0 +1,9 @@
+package com.gwsistemas.tracking.enums;
+
+/**
+ * Operações da API que aceitam o header "Idempotency-Key".
+ */
+public enum IdempotentOperation {
+    CREATE_ORDER,
+    REGISTER_OCCURRENCE;
+}
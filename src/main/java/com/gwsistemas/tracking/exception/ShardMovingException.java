@@ -0,0 +1,7 @@
+package com.gwsistemas.tracking.exception;
+
+public class ShardMovingException extends RuntimeException {
+    public ShardMovingException(String message) {
+        super(message);
+    }
+}
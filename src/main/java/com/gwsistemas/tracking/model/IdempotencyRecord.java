@@ -0,0 +1,49 @@
+package com.gwsistemas.tracking.model;
+
+import com.gwsistemas.tracking.enums.IdempotentOperation;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidade que guarda a resposta original de uma requisição com "Idempotency-Key",
+ * para que as repetições (retries) recebam a mesma resposta sem reexecutar a operação.
+ */
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(exclude = "responseBody")
+@Entity
+@Table(name = "tb_idempotency_key")
+public class IdempotencyRecord {
+
+    //Operação + ":" + chave enviada pelo cliente
+    @Id
+    private String recordKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private IdempotentOperation operation;
+
+    @Column(nullable = false)
+    private String trackingCode;
+
+    @Column(nullable = false)
+    private String requestHash;
+
+    @Column(nullable = false)
+    private int responseStatus;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+}
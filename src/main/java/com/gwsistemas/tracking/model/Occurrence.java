@@ -3,6 +3,8 @@ package com.gwsistemas.tracking.model;
 import com.gwsistemas.tracking.enums.TrackingStatus;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDateTime;
 
@@ -18,6 +20,8 @@ import java.time.LocalDateTime;
 @ToString(exclude = "order")
 @Entity
 @Table(name = "tb_occurrence")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Occurrence {
 
     @Id
@@ -2,6 +2,10 @@ package com.gwsistemas.tracking.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -9,6 +13,7 @@ import java.util.List;
 /**
  * Entidade que representa uma encomenda.
  * Contém código de rastreamento, informações do cliente e lista de ocorrências.
+ * O código de rastreamento é o id natural da entidade e fica no cache de segundo nível.
  */
 
 @Getter
@@ -19,12 +24,16 @@ import java.util.List;
 @ToString(exclude = "occurrences")
 @Entity
 @Table(name = "tb_order")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 public class Order {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @NaturalId
     @Column(unique = true, nullable = false)
     private String trackingCode;
 
@@ -33,6 +42,7 @@ public class Order {
     private String deliveryAddress;
 
     //Relação 1:N — Uma encomenda pode ter várias ocorrências
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Occurrence> occurrences = new ArrayList<>();
 
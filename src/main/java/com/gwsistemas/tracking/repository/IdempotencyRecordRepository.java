@@ -0,0 +1,44 @@
+package com.gwsistemas.tracking.repository;
+
+import com.gwsistemas.tracking.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    // Reserva das chaves no shard de catálogo (tb_idempotency_key_claim), usada com sharding
+
+    @Query(value = "SELECT request_hash FROM tb_idempotency_key_claim WHERE record_key = :recordKey AND expires_at > :now",
+            nativeQuery = true)
+    Optional<String> findClaimHash(@Param("recordKey") String recordKey, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "DELETE FROM tb_idempotency_key_claim WHERE record_key = :recordKey AND expires_at <= :now",
+            nativeQuery = true)
+    int deleteExpiredClaim(@Param("recordKey") String recordKey, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "INSERT INTO tb_idempotency_key_claim (record_key, request_hash, expires_at) VALUES (:recordKey, :requestHash, :expiresAt)",
+            nativeQuery = true)
+    int insertClaim(@Param("recordKey") String recordKey,
+                    @Param("requestHash") String requestHash,
+                    @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query(value = "DELETE FROM tb_idempotency_key_claim WHERE record_key = :recordKey AND request_hash = :requestHash",
+            nativeQuery = true)
+    int deleteClaim(@Param("recordKey") String recordKey, @Param("requestHash") String requestHash);
+
+    @Modifying
+    @Query(value = "DELETE FROM tb_idempotency_key_claim WHERE expires_at < :now", nativeQuery = true)
+    int deleteExpiredClaims(@Param("now") LocalDateTime now);
+}
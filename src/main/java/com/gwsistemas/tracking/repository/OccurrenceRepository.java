@@ -1,8 +1,19 @@
 package com.gwsistemas.tracking.repository;
 
 import com.gwsistemas.tracking.model.Occurrence;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import java.util.Optional;
 
 public interface OccurrenceRepository extends JpaRepository<Occurrence, Long> {
 
+    /**
+     * Última ocorrência da encomenda, lida direto do banco (sem a coleção em cache).
+     * A leitura com lock (FOR SHARE) enxerga a última versão confirmada das linhas,
+     * mesmo que a transação já tenha um snapshot anterior.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    Optional<Occurrence> findFirstByOrderIdOrderByOccurrenceTimestampDescIdDesc(Long orderId);
 }
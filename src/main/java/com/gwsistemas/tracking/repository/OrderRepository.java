@@ -1,10 +1,45 @@
 package com.gwsistemas.tracking.repository;
 
 import com.gwsistemas.tracking.model.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-import java.util.Optional;
+import java.util.Collection;
+import java.util.List;
 
-public interface OrderRepository extends JpaRepository<Order, Long> {
-    Optional<Order> findByTrackingCode(String trackingCode);
+public interface OrderRepository extends JpaRepository<Order, Long>, OrderRepositoryCustom {
+
+    @EntityGraph(attributePaths = "occurrences")
+    List<Order> findAllByTrackingCodeIn(Collection<String> trackingCodes);
+
+    /**
+     * Página (keyset) das encomendas de um cliente, das mais novas para as mais antigas.
+     * Usa o índice idx_order_customer; a última ocorrência de cada encomenda vem
+     * do índice idx_occurrence_order_timestamp (uma leitura por encomenda da página).
+     *
+     * @param beforeId Retorna apenas encomendas com id menor que este (cursor da página).
+     */
+    @Query(value = """
+            SELECT o.id AS id,
+                   o.tracking_code AS trackingCode,
+                   o.delivery_address AS deliveryAddress,
+                   last_occ.status AS currentStatus,
+                   last_occ.occurrence_timestamp AS lastUpdate
+            FROM tb_order o
+            LEFT JOIN LATERAL (
+                SELECT oc.status, oc.occurrence_timestamp
+                FROM tb_occurrence oc
+                WHERE oc.order_id = o.id
+                ORDER BY oc.occurrence_timestamp DESC, oc.id DESC
+                LIMIT 1
+            ) last_occ ON TRUE
+            WHERE o.customer_name = :customerName AND o.id < :beforeId
+            ORDER BY o.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<OrderSummaryView> findCustomerPage(@Param("customerName") String customerName,
+                                            @Param("beforeId") long beforeId,
+                                            @Param("limit") int limit);
 }
@@ -0,0 +1,21 @@
+package com.gwsistemas.tracking.repository;
+
+import com.gwsistemas.tracking.model.Order;
+
+import java.util.Optional;
+
+public interface OrderRepositoryCustom {
+
+    /**
+     * Busca a encomenda pelo id natural (código de rastreio),
+     * usando o cache de id natural e o cache de segundo nível do Hibernate.
+     */
+    Optional<Order> findByTrackingCode(String trackingCode);
+
+    /**
+     * Busca a encomenda pelo id natural e bloqueia a linha (PESSIMISTIC_WRITE) até o fim da transação.
+     * A entidade é lida do banco, nunca do cache de segundo nível; só o mapeamento
+     * código -> id (imutável) pode vir do cache de id natural.
+     */
+    Optional<Order> findByTrackingCodeForUpdate(String trackingCode);
+}
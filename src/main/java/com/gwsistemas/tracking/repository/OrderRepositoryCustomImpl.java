@@ -0,0 +1,33 @@
+package com.gwsistemas.tracking.repository;
+
+import com.gwsistemas.tracking.model.Order;
+import jakarta.persistence.EntityManager;
+import org.hibernate.LockMode;
+import org.hibernate.LockOptions;
+import org.hibernate.Session;
+
+import java.util.Optional;
+
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+
+    private final EntityManager entityManager;
+
+    public OrderRepositoryCustomImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Optional<Order> findByTrackingCode(String trackingCode) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Order.class)
+                .loadOptional(trackingCode);
+    }
+
+    @Override
+    public Optional<Order> findByTrackingCodeForUpdate(String trackingCode) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Order.class)
+                .with(new LockOptions(LockMode.PESSIMISTIC_WRITE))
+                .loadOptional(trackingCode);
+    }
+}
@@ -0,0 +1,20 @@
+package com.gwsistemas.tracking.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projeção da listagem de encomendas por cliente: dados da encomenda
+ * e a última ocorrência, sem carregar a coleção de ocorrências.
+ */
+public interface OrderSummaryView {
+
+    Long getId();
+
+    String getTrackingCode();
+
+    String getDeliveryAddress();
+
+    String getCurrentStatus();
+
+    LocalDateTime getLastUpdate();
+}
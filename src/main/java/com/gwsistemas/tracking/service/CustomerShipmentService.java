@@ -0,0 +1,99 @@
+package com.gwsistemas.tracking.service;
+
+import com.gwsistemas.tracking.config.ShardFanOut;
+import com.gwsistemas.tracking.dto.output.CustomerShipmentPageDTO;
+import com.gwsistemas.tracking.dto.output.OrderSummaryDTO;
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import com.gwsistemas.tracking.exception.BusinessRuleException;
+import com.gwsistemas.tracking.repository.OrderRepository;
+import com.gwsistemas.tracking.repository.OrderSummaryView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serviço da listagem de encomendas por cliente, com paginação por cursor (keyset).
+ * O cursor é o id da última encomenda da página: o custo de cada página não depende
+ * de quantas encomendas o cliente já tem. Com sharding, cada shard devolve a sua página
+ * e as páginas são mescladas por id (os ids são únicos entre os shards).
+ */
+
+@Service
+public class CustomerShipmentService {
+
+    private final OrderRepository orderRepository;
+    private final ShardFanOut shardFanOut;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxPageSize;
+
+    public CustomerShipmentService(OrderRepository orderRepository,
+                                   ShardFanOut shardFanOut,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${tracking.shipments.max-page-size:100}") int maxPageSize) {
+        this.orderRepository = orderRepository;
+        this.shardFanOut = shardFanOut;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Lista as encomendas do cliente, das mais novas para as mais antigas, com o status atual.
+     *
+     * @param customerName Nome do cliente.
+     * @param cursor Cursor retornado na página anterior (nulo para a primeira página).
+     * @param size Quantidade de encomendas da página.
+     * @return Página com as encomendas e o cursor da próxima página.
+     * @throws BusinessRuleException se o cliente não for informado ou o tamanho for inválido.
+     */
+    public CustomerShipmentPageDTO listShipments(String customerName, Long cursor, int size) {
+        if (customerName == null || customerName.isBlank()) {
+            throw new BusinessRuleException("O nome do cliente é obrigatório.");
+        }
+        if (size < 1 || size > maxPageSize) {
+            throw new BusinessRuleException("O tamanho da página deve estar entre 1 e " + maxPageSize + ".");
+        }
+
+        long beforeId = cursor != null ? cursor : Long.MAX_VALUE;
+
+        // Um item a mais para saber se existe próxima página
+        List<ShardRow> shardRows = shardFanOut.onAllShards(() -> readOnlyTransaction.execute(
+                        tx -> orderRepository.findCustomerPage(customerName, beforeId, size + 1).stream()
+                                .map(view -> new ShardRow(view, shardFanOut.isOwnedByCurrentShard(view.getTrackingCode())))
+                                .toList()))
+                .stream()
+                .flatMap(List::stream)
+                .toList();
+
+        // Durante um resharding a encomenda pode estar em dois shards: fica a cópia do shard dono
+        Map<Long, ShardRow> byId = new HashMap<>();
+        for (ShardRow row : shardRows) {
+            byId.merge(row.view().getId(), row, (current, other) -> current.owned() ? current : other);
+        }
+
+        List<OrderSummaryView> rows = byId.values().stream()
+                .map(ShardRow::view)
+                .sorted(Comparator.comparing(OrderSummaryView::getId).reversed())
+                .limit(size + 1L)
+                .toList();
+
+        List<OrderSummaryView> page = rows.subList(0, Math.min(size, rows.size()));
+        Long nextCursor = rows.size() > size ? page.get(page.size() - 1).getId() : null;
+
+        return new CustomerShipmentPageDTO(page.stream().map(this::toSummaryDTO).toList(), nextCursor);
+    }
+
+    private OrderSummaryDTO toSummaryDTO(OrderSummaryView view) {
+        TrackingStatus status = view.getCurrentStatus() != null ? TrackingStatus.valueOf(view.getCurrentStatus()) : null;
+        return new OrderSummaryDTO(view.getTrackingCode(), view.getDeliveryAddress(), status, view.getLastUpdate());
+    }
+
+    private record ShardRow(OrderSummaryView view, boolean owned) {
+    }
+}
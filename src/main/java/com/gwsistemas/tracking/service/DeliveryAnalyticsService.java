@@ -0,0 +1,245 @@
+package com.gwsistemas.tracking.service;
+
+import com.gwsistemas.tracking.analytics.LatencyHistogram;
+import com.gwsistemas.tracking.analytics.SlaAggregate;
+import com.gwsistemas.tracking.analytics.SlaWindow;
+import com.gwsistemas.tracking.analytics.StatusTransition;
+import com.gwsistemas.tracking.dto.output.SlaWindowDTO;
+import com.gwsistemas.tracking.dto.output.TransitionLatencyDTO;
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import com.gwsistemas.tracking.exception.BusinessRuleException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Serviço de indicadores de SLA de entrega.
+ * Mantém, em memória, histogramas de latência por transição de status e por janela de tempo,
+ * atualizados a cada ocorrência aceita. O histórico é reconstruído pelo {@link SlaBackfillService}
+ * (na inicialização e sob demanda); até a primeira reconstrução, os indicadores só contêm
+ * as ocorrências recebidas por esta instância (historyComplete = false nas respostas).
+ */
+
+@Service
+public class DeliveryAnalyticsService {
+
+    private final Duration window;
+    private final Duration retention;
+    private final Duration rebuildOverlap;
+
+    // Leitura: gravação de eventos (concorrente). Escrita: troca do agregado ao fim do backfill.
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    private volatile SlaAggregate current;
+    private volatile Rebuild rebuild;
+    private volatile boolean historyComplete;
+
+    public DeliveryAnalyticsService(@Value("${tracking.analytics.window:1d}") Duration window,
+                                    @Value("${tracking.analytics.retention:90d}") Duration retention,
+                                    @Value("${tracking.analytics.backfill.overlap:10m}") Duration rebuildOverlap) {
+        this.window = window;
+        this.retention = retention;
+        this.rebuildOverlap = rebuildOverlap;
+        this.current = new SlaAggregate(window);
+    }
+
+    /**
+     * Registra uma ocorrência aceita por {@code registerNewOccurrence}.
+     * Dentro de uma transação, o registro só acontece após o commit.
+     *
+     * @param occurrenceId Id da ocorrência (evita contar o evento duas vezes durante uma reconstrução).
+     * @param previousStatus Status da ocorrência anterior (null se for a primeira).
+     * @param previousTimestamp Data/hora da ocorrência anterior (null se for a primeira).
+     */
+    public void recordOccurrence(Long occurrenceId, TrackingStatus previousStatus, LocalDateTime previousTimestamp,
+                                 TrackingStatus status, LocalDateTime timestamp) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(occurrenceId, previousStatus, previousTimestamp, status, timestamp);
+                }
+            });
+        } else {
+            record(occurrenceId, previousStatus, previousTimestamp, status, timestamp);
+        }
+    }
+
+    /**
+     * Indica se o histórico já foi reconstruído desde a inicialização.
+     */
+    public boolean isHistoryComplete() {
+        return historyComplete;
+    }
+
+    /**
+     * Retorna os indicadores de cada janela que começa em [from, to).
+     */
+    public List<SlaWindowDTO> getWindows(LocalDateTime from, LocalDateTime to) {
+        validateRange(from, to);
+
+        List<SlaWindowDTO> result = new ArrayList<>();
+        current.windowsBetween(from, to).forEach((start, slaWindow) -> {
+            LocalDateTime windowStart = LocalDateTime.ofEpochSecond(start, 0, ZoneOffset.UTC);
+            result.add(toDTO(windowStart, windowStart.plus(window), slaWindow));
+        });
+        return result;
+    }
+
+    /**
+     * Retorna os indicadores de [from, to) mesclados em uma única janela.
+     */
+    public SlaWindowDTO getSummary(LocalDateTime from, LocalDateTime to) {
+        validateRange(from, to);
+
+        SlaWindow merged = new SlaWindow();
+        current.windowsBetween(from, to).values().forEach(merged::merge);
+        return toDTO(from, to, merged);
+    }
+
+    /**
+     * Inicia uma reconstrução: todo evento confirmado (commit) a partir de agora também é
+     * guardado à parte, para ser somado ao resultado do backfill.
+     * Um evento que o backfill também leia do banco é contado só uma vez (ver {@link #claimForHistory}).
+     */
+    void beginRebuild() {
+        swapLock.writeLock().lock();
+        try {
+            rebuild = new Rebuild(LocalDateTime.now().minus(rebuildOverlap), new SlaAggregate(window),
+                    ConcurrentHashMap.newKeySet());
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Chamado pelo backfill para cada ocorrência lida do banco: retorna se ela deve entrar no histórico.
+     * Ocorrências recentes (que podem ter sido confirmadas depois do início da reconstrução)
+     * só entram se ainda não foram registradas como evento pendente, e vice-versa.
+     * As mais antigas que {@code tracking.analytics.backfill.overlap} antes do início sempre entram.
+     */
+    boolean claimForHistory(long occurrenceId, LocalDateTime timestamp) {
+        Rebuild activeRebuild = rebuild;
+        if (activeRebuild == null || timestamp.isBefore(activeRebuild.claimFrom())) {
+            return true;
+        }
+        return activeRebuild.claimedIds().add(occurrenceId);
+    }
+
+    /**
+     * Substitui o agregado atual pelo histórico reconstruído (lido do banco)
+     * somado aos eventos recebidos durante a reconstrução.
+     */
+    void completeRebuild(SlaAggregate history) {
+        swapLock.writeLock().lock();
+        try {
+            if (rebuild != null) {
+                history.merge(rebuild.pending());
+            }
+            history.pruneBefore(LocalDateTime.now().minus(retention));
+            current = history;
+            rebuild = null;
+            historyComplete = true;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    void abortRebuild() {
+        swapLock.writeLock().lock();
+        try {
+            rebuild = null;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    Duration getWindow() {
+        return window;
+    }
+
+    /**
+     * Início do histórico lido pelo backfill: a retenção mais uma janela,
+     * para que a janela mais antiga mantida seja reconstruída inteira.
+     */
+    LocalDateTime historyStart() {
+        return LocalDateTime.now().minus(retention).minus(window);
+    }
+
+    /**
+     * Remove as janelas mais antigas que a retenção configurada.
+     */
+    @Scheduled(fixedDelayString = "${tracking.analytics.prune-interval:PT1H}")
+    public void pruneExpiredWindows() {
+        current.pruneBefore(LocalDateTime.now().minus(retention));
+    }
+
+    private void record(Long occurrenceId, TrackingStatus previousStatus, LocalDateTime previousTimestamp,
+                        TrackingStatus status, LocalDateTime timestamp) {
+        swapLock.readLock().lock();
+        try {
+            current.record(previousStatus, previousTimestamp, status, timestamp);
+
+            // Durante a reconstrução, todo evento confirmado vai para os pendentes (ordem de commit),
+            // exceto se o backfill já o leu do banco
+            Rebuild activeRebuild = rebuild;
+            if (activeRebuild != null && activeRebuild.claimedIds().add(occurrenceId)) {
+                activeRebuild.pending().record(previousStatus, previousTimestamp, status, timestamp);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private void validateRange(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new BusinessRuleException("O início do período deve ser anterior ao fim.");
+        }
+    }
+
+    private SlaWindowDTO toDTO(LocalDateTime windowStart, LocalDateTime windowEnd, SlaWindow slaWindow) {
+        Map<TrackingStatus, Long> statusCounts = new EnumMap<>(TrackingStatus.class);
+        for (TrackingStatus status : TrackingStatus.values()) {
+            statusCounts.put(status, slaWindow.getStatusCount(status));
+        }
+
+        long delivered = statusCounts.get(TrackingStatus.ENTREGUE);
+        long notDelivered = statusCounts.get(TrackingStatus.NAO_ENTREGUE);
+        double naoEntregueRate = delivered + notDelivered == 0 ? 0.0 : (double) notDelivered / (delivered + notDelivered);
+
+        List<TransitionLatencyDTO> transitions = new ArrayList<>();
+        for (Map.Entry<StatusTransition, LatencyHistogram> entry : slaWindow.getTransitions().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            transitions.add(new TransitionLatencyDTO(
+                    entry.getKey().from(),
+                    entry.getKey().to(),
+                    histogram.getCount(),
+                    histogram.percentile(50),
+                    histogram.percentile(90),
+                    histogram.percentile(99)));
+        }
+        transitions.sort(Comparator.comparing(TransitionLatencyDTO::getFromStatus)
+                .thenComparing(TransitionLatencyDTO::getToStatus));
+
+        return new SlaWindowDTO(windowStart, windowEnd, statusCounts, naoEntregueRate, transitions, historyComplete);
+    }
+
+    //claimedIds: ocorrências recentes já contadas (pelo backfill ou como evento pendente)
+    private record Rebuild(LocalDateTime claimFrom, SlaAggregate pending, Set<Long> claimedIds) {
+    }
+}
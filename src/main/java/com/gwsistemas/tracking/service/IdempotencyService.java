@@ -0,0 +1,317 @@
+package com.gwsistemas.tracking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gwsistemas.tracking.config.DataSourceRoutingContext;
+import com.gwsistemas.tracking.config.ShardFanOut;
+import com.gwsistemas.tracking.config.ShardTransactionGuard;
+import com.gwsistemas.tracking.enums.IdempotentOperation;
+import com.gwsistemas.tracking.exception.BusinessRuleException;
+import com.gwsistemas.tracking.exception.IdempotencyConflictException;
+import com.gwsistemas.tracking.model.IdempotencyRecord;
+import com.gwsistemas.tracking.repository.IdempotencyRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Serviço responsável pelas chaves de idempotência ("Idempotency-Key") da API.
+ * A resposta original de cada chave é guardada em uma camada em memória (LRU limitada)
+ * e na tabela tb_idempotency_key, ambas com expiração (TTL).
+ * Com sharding, o registro fica no mesmo shard da encomenda (pelo código de rastreio) e a chave
+ * também é reservada no shard de catálogo: o reuso da chave com outro código de rastreio
+ * (que cairia em outro shard) é detectado ali.
+ */
+
+@Service
+public class IdempotencyService {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ShardFanOut shardFanOut;
+    private final ShardTransactionGuard shardTransactionGuard;
+    private final Duration ttl;
+    private final Map<String, StoredResponse> memoryTier;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              ShardFanOut shardFanOut,
+                              ShardTransactionGuard shardTransactionGuard,
+                              @Value("${tracking.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${tracking.idempotency.memory-max-entries:10000}") int memoryMaxEntries) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.shardFanOut = shardFanOut;
+        this.shardTransactionGuard = shardTransactionGuard;
+        this.ttl = ttl;
+        this.memoryTier = Collections.synchronizedMap(new LinkedHashMap<String, StoredResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > memoryMaxEntries;
+            }
+        });
+    }
+
+    /**
+     * Executa a operação uma única vez por chave de idempotência.
+     * Repetições com a mesma chave recebem a resposta original, sem reexecutar a operação.
+     * Apenas respostas de sucesso (2xx) são guardadas; erros podem ser tentados novamente.
+     *
+     * @param idempotencyKey Valor do header "Idempotency-Key" (sem header, a operação é executada normalmente).
+     * @param request Corpo da requisição, usado para detectar reuso da chave com outro conteúdo.
+     * @throws IdempotencyConflictException se a chave já foi usada com outra requisição.
+     */
+    public <T> ResponseEntity<T> execute(String idempotencyKey,
+                                         IdempotentOperation operation,
+                                         String trackingCode,
+                                         Object request,
+                                         Class<T> responseType,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BusinessRuleException("O header '" + IDEMPOTENCY_KEY_HEADER + "' deve ter entre 1 e " + MAX_KEY_LENGTH + " caracteres.");
+        }
+
+        String recordKey = operation.name() + ":" + idempotencyKey;
+        String requestHash = hashRequest(operation, trackingCode, request);
+
+        Optional<StoredResponse> cached = findInMemory(recordKey);
+        if (cached.isPresent()) {
+            return replay(cached.get(), requestHash, responseType);
+        }
+
+        boolean claimed = shardFanOut.isSharded() && claimKey(recordKey, requestHash);
+        try {
+            ResponseEntity<T> response = executeOnce(recordKey, operation, trackingCode, requestHash, responseType, action);
+            if (claimed && !response.getStatusCode().is2xxSuccessful()) {
+                releaseClaim(recordKey, requestHash);
+            }
+            return response;
+        } catch (RuntimeException e) {
+            if (claimed) {
+                releaseClaim(recordKey, requestHash);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reserva a chave no shard de catálogo (com sharding).
+     *
+     * @return true se a reserva foi criada agora; false se já existia para a mesma requisição.
+     * @throws IdempotencyConflictException se a chave já foi reservada por uma requisição diferente.
+     */
+    private boolean claimKey(String recordKey, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<String> existing = onCatalog(() -> {
+            idempotencyRecordRepository.deleteExpiredClaim(recordKey, now);
+            return idempotencyRecordRepository.findClaimHash(recordKey, now);
+        });
+
+        if (existing.isEmpty()) {
+            try {
+                onCatalog(() -> idempotencyRecordRepository.insertClaim(recordKey, requestHash, now.plus(ttl)));
+                return true;
+            } catch (DataIntegrityViolationException e) {
+                // Outra requisição reservou a mesma chave antes
+                existing = onCatalog(() -> idempotencyRecordRepository.findClaimHash(recordKey, now));
+            }
+        }
+
+        if (existing.isPresent() && !existing.get().equals(requestHash)) {
+            throw new IdempotencyConflictException("A chave de idempotência já foi usada com uma requisição diferente.");
+        }
+        return false;
+    }
+
+    /**
+     * Libera a reserva quando nada foi guardado, para que a chave possa ser usada de novo.
+     */
+    private void releaseClaim(String recordKey, String requestHash) {
+        onCatalog(() -> idempotencyRecordRepository.deleteClaim(recordKey, requestHash));
+    }
+
+    private <R> R onCatalog(Supplier<R> action) {
+        try (DataSourceRoutingContext.Scope ignored = DataSourceRoutingContext.bindShard(shardFanOut.catalogShard())) {
+            return transactionTemplate.execute(tx -> action.get());
+        }
+    }
+
+    private <T> ResponseEntity<T> executeOnce(String recordKey,
+                                              IdempotentOperation operation,
+                                              String trackingCode,
+                                              String requestHash,
+                                              Class<T> responseType,
+                                              Supplier<ResponseEntity<T>> action) {
+        try {
+            Execution<T> execution = transactionTemplate.execute(tx -> {
+                // O shard (e a versão do anel) é definido antes da primeira consulta da transação;
+                // a operação chamada abaixo participa da mesma transação e do mesmo shard
+                shardTransactionGuard.bindForTransaction(trackingCode);
+                Optional<StoredResponse> stored = findInDatabase(recordKey);
+                if (stored.isPresent()) {
+                    return new Execution<>(stored.get(), null);
+                }
+
+                ResponseEntity<T> response = action.get();
+                if (!response.getStatusCode().is2xxSuccessful()) {
+                    return new Execution<>(null, response);
+                }
+
+                IdempotencyRecord record = toRecord(recordKey, operation, trackingCode, requestHash, response);
+                idempotencyRecordRepository.saveAndFlush(record);
+                return new Execution<>(toStoredResponse(record), response);
+            });
+
+            StoredResponse storedResponse = execution.storedResponse();
+            if (storedResponse != null) {
+                memoryTier.put(recordKey, storedResponse);
+            }
+            if (execution.response() == null) {
+                return replay(storedResponse, requestHash, responseType);
+            }
+            return execution.response();
+
+        } catch (DataIntegrityViolationException e) {
+            // Outra requisição com a mesma chave foi concluída antes: a nossa transação foi desfeita
+            StoredResponse winner = transactionTemplate.execute(tx -> {
+                shardTransactionGuard.bindForTransaction(trackingCode);
+                return findInDatabase(recordKey).orElse(null);
+            });
+            if (winner == null) {
+                throw e;
+            }
+            memoryTier.put(recordKey, winner);
+            return replay(winner, requestHash, responseType);
+        }
+    }
+
+    /**
+     * Remove da tabela (em todos os shards) as chaves expiradas e, com sharding, as reservas expiradas.
+     */
+    @Scheduled(fixedDelayString = "${tracking.idempotency.purge-interval:PT10M}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        shardFanOut.onAllShards(() -> transactionTemplate.execute(tx -> idempotencyRecordRepository.deleteExpired(now)));
+        if (shardFanOut.isSharded()) {
+            onCatalog(() -> idempotencyRecordRepository.deleteExpiredClaims(now));
+        }
+        synchronized (memoryTier) {
+            memoryTier.values().removeIf(stored -> stored.isExpired(now));
+        }
+    }
+
+    private Optional<StoredResponse> findInMemory(String recordKey) {
+        StoredResponse stored = memoryTier.get(recordKey);
+        if (stored == null) {
+            return Optional.empty();
+        }
+        if (stored.isExpired(LocalDateTime.now())) {
+            memoryTier.remove(recordKey);
+            return Optional.empty();
+        }
+        return Optional.of(stored);
+    }
+
+    private Optional<StoredResponse> findInDatabase(String recordKey) {
+        LocalDateTime now = LocalDateTime.now();
+        return idempotencyRecordRepository.findById(recordKey)
+                .map(this::toStoredResponse)
+                .filter(stored -> !stored.isExpired(now));
+    }
+
+    /**
+     * Devolve a resposta original, marcada com o header "Idempotent-Replayed".
+     */
+    private <T> ResponseEntity<T> replay(StoredResponse stored, String requestHash, Class<T> responseType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException("A chave de idempotência já foi usada com uma requisição diferente.");
+        }
+
+        try {
+            T body = objectMapper.readValue(stored.body(), responseType);
+            return ResponseEntity.status(stored.status())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(REPLAYED_HEADER, "true")
+                    .body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Resposta idempotente armazenada é inválida.", e);
+        }
+    }
+
+    private <T> IdempotencyRecord toRecord(String recordKey, IdempotentOperation operation, String trackingCode,
+                                           String requestHash, ResponseEntity<T> response) {
+        LocalDateTime now = LocalDateTime.now();
+        return new IdempotencyRecord(
+                recordKey,
+                operation,
+                trackingCode,
+                requestHash,
+                response.getStatusCode().value(),
+                toJson(response.getBody()),
+                now,
+                now.plus(ttl));
+    }
+
+    private StoredResponse toStoredResponse(IdempotencyRecord record) {
+        return new StoredResponse(record.getRequestHash(), record.getResponseStatus(),
+                record.getResponseBody(), record.getExpiresAt());
+    }
+
+    private String hashRequest(IdempotentOperation operation, String trackingCode, Object request) {
+        String fingerprint = operation.name() + "|" + trackingCode + "|" + toJson(request);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(fingerprint.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record StoredResponse(String requestHash, int status, String body, LocalDateTime expiresAt) {
+
+        boolean isExpired(LocalDateTime now) {
+            return !expiresAt.isAfter(now);
+        }
+    }
+
+    //Resultado da transação: resposta armazenada (nova ou existente) e/ou resposta recém-executada
+    private record Execution<T>(StoredResponse storedResponse, ResponseEntity<T> response) {
+    }
+}
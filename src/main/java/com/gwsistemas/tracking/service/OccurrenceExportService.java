@@ -0,0 +1,282 @@
+package com.gwsistemas.tracking.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gwsistemas.tracking.config.ShardFanOut;
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import com.gwsistemas.tracking.exception.BusinessRuleException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Serviço de exportação das ocorrências de todas as encomendas em uma janela de tempo.
+ * As linhas são lidas em streaming (uma a uma, sem carregar o resultado inteiro no driver)
+ * e escritas direto na saída como NDJSON, sem acumular nada em memória.
+ * Com sharding, cada shard é lido em paralelo e as linhas são intercaladas em ordem
+ * de data (merge), com uma fila limitada por shard.
+ */
+@Service
+public class OccurrenceExportService {
+
+    private static final String EXPORT_SQL = """
+            SELECT oc.id, o.tracking_code, oc.status, oc.occurrence_timestamp
+            FROM tb_occurrence oc
+            JOIN tb_order o ON o.id = oc.order_id
+            WHERE oc.occurrence_timestamp >= ? AND oc.occurrence_timestamp < ?
+            """;
+
+    private static final String STATUS_FILTER = " AND oc.status = ?";
+
+    private static final String ORDER_BY = " ORDER BY oc.occurrence_timestamp, oc.id";
+
+    // Com o Connector/J, fetch size Integer.MIN_VALUE em um statement forward-only e read-only
+    // faz o driver ler as linhas uma a uma (streaming), sem mudar as demais consultas da aplicação
+    static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+    private static final ExportRow END = new ExportRow(-1, null, null, null);
+
+    private static final Comparator<ShardHead> MERGE_ORDER = Comparator
+            .comparing((ShardHead head) -> head.row().occurrenceTimestamp())
+            .thenComparingLong(head -> head.row().id());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final ShardFanOut shardFanOut;
+    private final int mergeBufferSize;
+
+    public OccurrenceExportService(JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   ObjectMapper objectMapper,
+                                   ShardFanOut shardFanOut,
+                                   @Value("${tracking.export.merge-buffer-size:1000}") int mergeBufferSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.shardFanOut = shardFanOut;
+        this.mergeBufferSize = mergeBufferSize;
+    }
+
+    /**
+     * Valida a janela de exportação antes de iniciar o streaming.
+     *
+     * @throws BusinessRuleException se a janela for inválida.
+     */
+    public void validateWindow(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new BusinessRuleException("O início da janela de exportação deve ser anterior ao fim.");
+        }
+    }
+
+    /**
+     * Escreve em {@code out} uma linha JSON por ocorrência da janela [from, to).
+     *
+     * @param status Filtro opcional de status (aplicado no banco).
+     */
+    public void export(LocalDateTime from, LocalDateTime to, TrackingStatus status, OutputStream out) throws IOException {
+        validateWindow(from, to);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+            if (shardFanOut.isSharded()) {
+                exportMerged(from, to, status, generator);
+            } else {
+                streamRows(from, to, status, row -> writeRow(generator, row));
+            }
+
+            generator.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Lê todos os shards em paralelo e escreve as linhas em ordem de (data, id), sem repetir ids.
+     * Cada shard tem uma fila limitada, então a memória continua constante.
+     */
+    private void exportMerged(LocalDateTime from, LocalDateTime to, TrackingStatus status,
+                              JsonGenerator generator) throws IOException {
+        List<String> shards = shardFanOut.activeShards();
+        List<BlockingQueue<ExportRow>> queues = new ArrayList<>();
+        List<Future<Void>> producers = new ArrayList<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        try {
+            for (String shard : shards) {
+                BlockingQueue<ExportRow> queue = new ArrayBlockingQueue<>(mergeBufferSize);
+                queues.add(queue);
+                producers.add(shardFanOut.submitOnShard(shard, () -> {
+                    try {
+                        streamRows(from, to, status, row -> put(queue, row, cancelled));
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        if (!cancelled.get()) {
+                            put(queue, END, cancelled);
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            PriorityQueue<ShardHead> heads = new PriorityQueue<>(MERGE_ORDER);
+            for (int i = 0; i < queues.size(); i++) {
+                takeNext(queues, i, heads, failure);
+            }
+            long lastWrittenId = -1;
+            while (!heads.isEmpty()) {
+                ShardHead head = heads.poll();
+                // Durante um resharding a ocorrência pode estar nos dois shards (mesmo id, vizinhas no merge)
+                if (head.row().id() != lastWrittenId) {
+                    writeRow(generator, head.row());
+                    lastWrittenId = head.row().id();
+                }
+                takeNext(queues, head.shardIndex(), heads, failure);
+            }
+        } finally {
+            cancelled.set(true);
+            producers.forEach(producer -> producer.cancel(true));
+        }
+    }
+
+    private void streamRows(LocalDateTime from, LocalDateTime to, TrackingStatus status, Consumer<ExportRow> consumer) {
+        AtomicReference<PreparedStatement> statement = new AtomicReference<>();
+        try {
+            readOnlyTransaction.executeWithoutResult(tx -> jdbcTemplate.query(con -> {
+                String sql = EXPORT_SQL + (status != null ? STATUS_FILTER : "") + ORDER_BY;
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(STREAMING_FETCH_SIZE);
+                ps.setObject(1, from);
+                ps.setObject(2, to);
+                if (status != null) {
+                    ps.setString(3, status.name());
+                }
+                statement.set(ps);
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    consumer.accept(toRow(rs));
+                } catch (RuntimeException e) {
+                    // Cliente desconectou ou merge cancelado: interrompe antes de o ResultSet ser fechado
+                    abortStreaming(statement.get());
+                    throw e;
+                }
+            }));
+        } catch (TransactionSystemException e) {
+            // O rollback falha na conexão abortada: propaga o motivo da interrupção
+            if (e.getApplicationException() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Interrompe a leitura em streaming. Ao fechar um ResultSet em streaming, o Connector/J lê
+     * (e descarta) todas as linhas restantes, segurando a conexão até o fim da consulta.
+     * O cancel só tem efeito enquanto o driver ainda executa a consulta; depois disso, só o abort
+     * da conexão encerra a transferência (o pool descarta a conexão abortada).
+     */
+    private static void abortStreaming(PreparedStatement ps) {
+        try {
+            ps.cancel();
+        } catch (SQLException ignored) {
+            // Driver sem suporte a cancel: o abort abaixo ainda encerra a leitura
+        }
+        try {
+            ps.getConnection().abort(Runnable::run);
+        } catch (SQLException ignored) {
+            // Conexão já encerrada
+        }
+    }
+
+    private ExportRow toRow(ResultSet rs) throws SQLException {
+        return new ExportRow(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getString(3),
+                rs.getObject(4, LocalDateTime.class));
+    }
+
+    private void takeNext(List<BlockingQueue<ExportRow>> queues, int shardIndex,
+                          PriorityQueue<ShardHead> heads, AtomicReference<Throwable> failure) throws IOException {
+        ExportRow row;
+        try {
+            row = queues.get(shardIndex).take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Exportação interrompida.", e);
+        }
+
+        if (row != END) {
+            heads.add(new ShardHead(row, shardIndex));
+        } else if (failure.get() != null) {
+            throw new IllegalStateException("Falha ao ler ocorrências de um shard.", failure.get());
+        }
+    }
+
+    private static void put(BlockingQueue<ExportRow> queue, ExportRow row, AtomicBoolean cancelled) {
+        try {
+            while (!queue.offer(row, 1, TimeUnit.SECONDS)) {
+                if (cancelled.get()) {
+                    throw new CancellationException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    private void writeRow(JsonGenerator generator, ExportRow row) {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("occurrenceId", row.id());
+            generator.writeStringField("trackingCode", row.trackingCode());
+            generator.writeStringField("status", row.status());
+            generator.writeStringField("occurrenceTimestamp",
+                    row.occurrenceTimestamp().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            // Cliente desconectou: interrompe a leitura do cursor
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record ExportRow(long id, String trackingCode, String status, LocalDateTime occurrenceTimestamp) {
+    }
+
+    private record ShardHead(ExportRow row, int shardIndex) {
+    }
+}
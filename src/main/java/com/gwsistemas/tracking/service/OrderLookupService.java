@@ -0,0 +1,81 @@
+package com.gwsistemas.tracking.service;
+
+import com.gwsistemas.tracking.config.DataSourceRoutingContext;
+import com.gwsistemas.tracking.config.ReadYourWritesTracker;
+import com.gwsistemas.tracking.config.ShardFanOut;
+import com.gwsistemas.tracking.dto.output.OccurrenceDTO;
+import com.gwsistemas.tracking.dto.output.OrderDetailsDTO;
+import com.gwsistemas.tracking.mapper.OrderMapper;
+import com.gwsistemas.tracking.repository.OrderRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Serviço de consultas de várias encomendas.
+ * Com sharding, os códigos são agrupados por shard e cada shard é consultado em paralelo.
+ */
+
+@Service
+public class OrderLookupService {
+
+    private final OrderRepository orderRepository;
+    private final OrderMapper orderMapper;
+    private final ShardFanOut shardFanOut;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public OrderLookupService(OrderRepository orderRepository, OrderMapper orderMapper, ShardFanOut shardFanOut,
+                              ReadYourWritesTracker readYourWritesTracker, PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.orderMapper = orderMapper;
+        this.shardFanOut = shardFanOut;
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Consulta várias encomendas pelo código de rastreio.
+     * Códigos inexistentes são ignorados; o resultado segue a ordem dos códigos informados.
+     *
+     * @param trackingCodes Códigos de rastreio.
+     * @return DTOs com detalhes das encomendas e ocorrências ordenadas.
+     */
+    public List<OrderDetailsDTO> getTrackingDetails(List<String> trackingCodes) {
+        LinkedHashSet<String> distinctCodes = new LinkedHashSet<>(trackingCodes);
+
+        Map<String, OrderDetailsDTO> found = shardFanOut.onShardsFor(distinctCodes, this::findOnShard)
+                .stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toMap(OrderDetailsDTO::getTrackingCode, Function.identity()));
+
+        return distinctCodes.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private List<OrderDetailsDTO> findOnShard(List<String> trackingCodes) {
+        try (DataSourceRoutingContext.Scope ignored = readYourWritesTracker.primaryScopeIfAnyRecentlyWritten(trackingCodes)) {
+            return readOnlyTransaction.execute(tx -> orderRepository.findAllByTrackingCodeIn(trackingCodes)
+                    .stream()
+                    .map(order -> {
+                        OrderDetailsDTO dto = orderMapper.toDetailsDTO(order);
+                        dto.getOccurrences().sort(
+                                Comparator.comparing(OccurrenceDTO::getOccurrenceTimestamp).reversed()
+                        );
+                        return dto;
+                    })
+                    .toList());
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.gwsistemas.tracking.service;
+
+import com.gwsistemas.tracking.config.ConsistentHashRing;
+import com.gwsistemas.tracking.config.DataSourceRoutingContext;
+import com.gwsistemas.tracking.config.ShardRingStore;
+import com.gwsistemas.tracking.config.ShardRingSynchronizer;
+import com.gwsistemas.tracking.config.ShardRouter;
+import com.gwsistemas.tracking.config.ShardingProperties;
+import com.gwsistemas.tracking.exception.BusinessRuleException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resharding online: move as encomendas (com ocorrências e chaves de idempotência)
+ * para os shards de um novo anel, sem parar a aplicação.
+ *
+ * Cada etapa grava uma nova versão do anel em tb_shard_ring e só avança quando todas as
+ * instâncias vivas confirmaram essa versão (e terminaram as transações das versões anteriores):
+ * 1. destino definido: as escritas nos códigos que mudam de shard passam a ser recusadas (503);
+ * 2. cópia das encomendas que mudam de shard, com INSERT simples, uma transação por lote no destino;
+ * 3. troca do anel: leituras e escritas desses códigos vão para o shard novo;
+ * 4. remoção na origem, só das encomendas conferidas no destino (mesmo id, código,
+ *    ocorrências e chaves de idempotência).
+ *
+ * Se a cópia falhar, o resharding é cancelado e as escritas voltam a ser aceitas; as cópias
+ * parciais ficam invisíveis (não pertencem ao shard no anel) e são refeitas na próxima tentativa.
+ * Se a remoção falhar, o anel novo continua valendo e a remoção é retomada no próximo pedido.
+ */
+
+@Service
+@ConditionalOnProperty(name = "tracking.sharding.enabled", havingValue = "true")
+public class ReshardingService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReshardingService.class);
+
+    private static final String ORDER_BATCH_SQL = """
+            SELECT id, tracking_code, customer_name, delivery_address
+            FROM tb_order
+            WHERE id > ?
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    private static final String INSERT_ORDER_SQL =
+            "INSERT INTO tb_order (id, tracking_code, customer_name, delivery_address) VALUES (?, ?, ?, ?)";
+
+    private static final String SELECT_OCCURRENCES_SQL =
+            "SELECT id, status, occurrence_timestamp, order_id FROM tb_occurrence WHERE order_id IN (:orderIds)";
+
+    private static final String INSERT_OCCURRENCE_SQL =
+            "INSERT INTO tb_occurrence (id, status, occurrence_timestamp, order_id) VALUES (?, ?, ?, ?)";
+
+    private static final String SELECT_IDEMPOTENCY_SQL = """
+            SELECT record_key, operation, tracking_code, request_hash, response_status, response_body, created_at, expires_at
+            FROM tb_idempotency_key
+            WHERE tracking_code IN (:trackingCodes)
+            """;
+
+    private static final String INSERT_IDEMPOTENCY_SQL = """
+            INSERT INTO tb_idempotency_key
+                (record_key, operation, tracking_code, request_hash, response_status, response_body, created_at, expires_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String SELECT_ORDER_CODES_SQL = "SELECT id, tracking_code FROM tb_order WHERE id IN (:orderIds)";
+
+    private static final String SELECT_OCCURRENCE_IDS_SQL = "SELECT id FROM tb_occurrence WHERE id IN (:occurrenceIds)";
+
+    private static final String SELECT_LIVE_IDEMPOTENCY_KEYS_SQL = """
+            SELECT record_key, tracking_code FROM tb_idempotency_key
+            WHERE tracking_code IN (:trackingCodes) AND expires_at > CURRENT_TIMESTAMP
+            """;
+
+    private static final String SELECT_IDEMPOTENCY_KEYS_SQL =
+            "SELECT record_key FROM tb_idempotency_key WHERE record_key IN (:recordKeys)";
+
+    private static final String DELETE_ORDERS_SQL = "DELETE FROM tb_order WHERE id IN (:orderIds)";
+
+    private static final String DELETE_IDEMPOTENCY_SQL = "DELETE FROM tb_idempotency_key WHERE tracking_code IN (:trackingCodes)";
+
+    private final ShardRouter shardRouter;
+    private final ShardingProperties shardingProperties;
+    private final ShardRingStore ringStore;
+    private final ShardRingSynchronizer ringSynchronizer;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile String lastResult;
+
+    public ReshardingService(ShardRouter shardRouter,
+                             ShardingProperties shardingProperties,
+                             ShardRingStore ringStore,
+                             ShardRingSynchronizer ringSynchronizer,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager) {
+        this.shardRouter = shardRouter;
+        this.shardingProperties = shardingProperties;
+        this.ringStore = ringStore;
+        this.ringSynchronizer = ringSynchronizer;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Inicia, em segundo plano, a migração para um anel com os shards informados.
+     * Um resharding interrompido é retomado quando pedido de novo com os mesmos shards.
+     *
+     * @throws BusinessRuleException se algum shard não estiver configurado ou já houver resharding em andamento.
+     */
+    public void startResharding(List<String> targetShards) {
+        List<String> target = List.copyOf(new LinkedHashSet<>(targetShards));
+        try {
+            shardRouter.newRing(target);
+        } catch (IllegalArgumentException e) {
+            throw new BusinessRuleException(e.getMessage());
+        }
+
+        if (!running.compareAndSet(false, true)) {
+            throw new BusinessRuleException("Já existe um resharding em andamento.");
+        }
+
+        try {
+            checkNotRunningElsewhere();
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+
+        executor.submit(() -> {
+            try {
+                reshard(target);
+                lastResult = "Concluído em " + LocalDateTime.now() + ": " + target;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lastResult = "Interrompido em " + LocalDateTime.now();
+            } catch (Exception e) {
+                lastResult = "Falhou em " + LocalDateTime.now() + ": " + e.getMessage();
+                log.error("Falha no resharding para {}", target, e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public String getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * Um resharding gravado em tb_shard_ring só pode ser retomado por outra instância
+     * se a que o conduzia não estiver mais viva.
+     */
+    private void checkNotRunningElsewhere() {
+        ringStore.load().ifPresent(ring -> {
+            boolean inProgress = ring.target() != null || ring.previous() != null;
+            if (inProgress && ring.owner() != null && !ring.owner().equals(ringSynchronizer.getInstanceId())
+                    && ringStore.isLive(ring.owner(), shardingProperties.getInstanceHeartbeatTimeout())) {
+                throw new BusinessRuleException("Já existe um resharding em andamento em outra instância.");
+            }
+        });
+    }
+
+    private void reshard(List<String> targetShards) throws InterruptedException {
+        ringSynchronizer.refresh();
+        ShardRouter.RingState state = shardRouter.getState();
+
+        if (state.previous() != null) {
+            log.info("Resharding: concluindo a remoção pendente na origem (versão {})", state.version());
+            state = finishCleanup(state);
+        }
+
+        if (state.target() == null) {
+            if (state.ring().getShards().equals(Set.copyOf(targetShards))) {
+                log.info("Resharding: o anel já tem os shards {}", targetShards);
+                return;
+            }
+            state = transition(state, shardsOf(state.ring()), targetShards, null);
+        } else if (!state.target().getShards().equals(Set.copyOf(targetShards))) {
+            throw new IllegalStateException("Há um resharding interrompido para " + state.target().getShards()
+                    + "; peça de novo com esses shards para concluí-lo.");
+        }
+
+        log.info("Resharding {} -> {} (versão {})", state.ring().getShards(), state.target().getShards(), state.version());
+
+        long copied;
+        try {
+            awaitAcks(state.version());
+            copied = copyMovedOrders(state.ring(), state.target());
+        } catch (RuntimeException | InterruptedException e) {
+            abort(state);
+            throw e;
+        }
+        log.info("Resharding: {} encomendas copiadas, trocando o anel", copied);
+
+        ShardRouter.RingState switched = transition(state, targetShards, null, shardsOf(state.ring()));
+        finishCleanup(switched);
+    }
+
+    /**
+     * Remove da origem as encomendas movidas, depois que todas as instâncias usam o anel novo.
+     */
+    private ShardRouter.RingState finishCleanup(ShardRouter.RingState state) throws InterruptedException {
+        awaitAcks(state.version());
+        long deleted = deleteMovedOrders(state.previous(), state.ring());
+        log.info("Resharding concluído: {} encomendas removidas da origem", deleted);
+        return transition(state, shardsOf(state.ring()), null, null);
+    }
+
+    /**
+     * Volta ao anel de origem, sem destino, liberando as escritas bloqueadas.
+     */
+    private void abort(ShardRouter.RingState migrating) {
+        try {
+            transition(migrating, shardsOf(migrating.ring()), null, null);
+            log.warn("Resharding cancelado; o anel continua {}", migrating.ring().getShards());
+        } catch (RuntimeException e) {
+            log.error("Não foi possível cancelar o resharding; peça de novo com os mesmos shards para concluí-lo", e);
+        }
+    }
+
+    /**
+     * Grava a próxima versão do anel (se ninguém a alterou antes) e a adota nesta instância.
+     */
+    private ShardRouter.RingState transition(ShardRouter.RingState current, List<String> active,
+                                             List<String> target, List<String> previous) {
+        long version = current.version() + 1;
+        String owner = target != null || previous != null ? ringSynchronizer.getInstanceId() : null;
+
+        if (!ringStore.compareAndSet(current.version(),
+                new ShardRingStore.PersistedRing(version, active, target, previous, owner))) {
+            throw new IllegalStateException("O anel de shards foi alterado por outro processo (versão " + current.version() + ").");
+        }
+
+        shardRouter.adopt(version, active, target, previous);
+        ringSynchronizer.refresh();
+        return shardRouter.getState();
+    }
+
+    /**
+     * Espera todas as instâncias vivas confirmarem a versão do anel.
+     *
+     * @throws IllegalStateException se alguma instância não confirmar dentro de tracking.sharding.reshard-ack-timeout.
+     */
+    private void awaitAcks(long version) throws InterruptedException {
+        long deadline = System.nanoTime() + shardingProperties.getReshardAckTimeout().toNanos();
+        while (true) {
+            ringSynchronizer.refresh();
+            List<Long> acked = ringStore.liveAckedVersions(shardingProperties.getInstanceHeartbeatTimeout());
+            if (acked.stream().allMatch(ackedVersion -> ackedVersion >= version)) {
+                return;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Nem todas as instâncias confirmaram a versão " + version + " do anel de shards.");
+            }
+            Thread.sleep(shardingProperties.getRingRefreshInterval().toMillis());
+        }
+    }
+
+    /**
+     * Copia, de cada shard de origem, as encomendas que pertencem a outro shard no novo anel.
+     */
+    long copyMovedOrders(ConsistentHashRing source, ConsistentHashRing target) {
+        long copied = 0;
+        for (String sourceShard : source.getShards()) {
+            long lastId = 0;
+            List<OrderRow> batch;
+            do {
+                batch = readOrderBatch(sourceShard, lastId);
+                for (Map.Entry<String, List<OrderRow>> moved : groupMoved(sourceShard, batch, target).entrySet()) {
+                    copyBatch(sourceShard, moved.getKey(), moved.getValue());
+                    copied += moved.getValue().size();
+                }
+                if (!batch.isEmpty()) {
+                    lastId = batch.get(batch.size() - 1).id();
+                }
+            } while (batch.size() == shardingProperties.getReshardBatchSize());
+        }
+        return copied;
+    }
+
+    /**
+     * Remove dos shards do anel anterior as encomendas que pertencem a outro shard no anel atual,
+     * só depois de conferir a cópia no destino. As ocorrências são removidas pelo ON DELETE CASCADE.
+     *
+     * @throws IllegalStateException se alguma encomenda não conferir (ela é mantida na origem).
+     */
+    long deleteMovedOrders(ConsistentHashRing previous, ConsistentHashRing current) {
+        long deleted = 0;
+        long unverified = 0;
+        for (String sourceShard : previous.getShards()) {
+            long lastId = 0;
+            List<OrderRow> batch;
+            do {
+                batch = readOrderBatch(sourceShard, lastId);
+                for (Map.Entry<String, List<OrderRow>> moved : groupMoved(sourceShard, batch, current).entrySet()) {
+                    List<OrderRow> verified = verifyCopied(sourceShard, moved.getKey(), moved.getValue());
+                    unverified += moved.getValue().size() - verified.size();
+                    if (!verified.isEmpty()) {
+                        MapSqlParameterSource params = orderParams(verified);
+                        onShard(sourceShard, tx -> {
+                            namedJdbcTemplate.update(DELETE_IDEMPOTENCY_SQL, params);
+                            return namedJdbcTemplate.update(DELETE_ORDERS_SQL, params);
+                        });
+                        deleted += verified.size();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    lastId = batch.get(batch.size() - 1).id();
+                }
+            } while (batch.size() == shardingProperties.getReshardBatchSize());
+        }
+
+        if (unverified > 0) {
+            throw new IllegalStateException(unverified + " encomendas não conferem com o shard de destino e foram mantidas na origem.");
+        }
+        return deleted;
+    }
+
+    private List<OrderRow> readOrderBatch(String shard, long afterId) {
+        return onShard(shard, tx -> jdbcTemplate.query(ORDER_BATCH_SQL,
+                (rs, rowNum) -> new OrderRow(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)),
+                afterId, shardingProperties.getReshardBatchSize()));
+    }
+
+    /**
+     * Agrupa, por shard de destino, as encomendas do lote que não pertencem ao shard de origem no anel.
+     */
+    private Map<String, List<OrderRow>> groupMoved(String sourceShard, List<OrderRow> batch, ConsistentHashRing ring) {
+        Map<String, List<OrderRow>> moved = new LinkedHashMap<>();
+        for (OrderRow order : batch) {
+            String targetShard = ring.shardFor(order.trackingCode());
+            if (!targetShard.equals(sourceShard)) {
+                moved.computeIfAbsent(targetShard, s -> new ArrayList<>()).add(order);
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Lê as ocorrências e chaves de idempotência das encomendas na origem e grava tudo no destino,
+     * em uma única transação. As escritas nesses códigos estão bloqueadas, então uma cópia deixada
+     * no destino por uma tentativa cancelada é descartada e refeita.
+     */
+    private void copyBatch(String sourceShard, String targetShard, List<OrderRow> orders) {
+        MapSqlParameterSource params = orderParams(orders);
+
+        List<Object[]> occurrences = onShard(sourceShard, tx -> namedJdbcTemplate.query(SELECT_OCCURRENCES_SQL, params,
+                (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getString(2), rs.getObject(3, LocalDateTime.class), rs.getLong(4)}));
+        List<Object[]> idempotencyKeys = onShard(sourceShard, tx -> namedJdbcTemplate.query(SELECT_IDEMPOTENCY_SQL, params,
+                (rs, rowNum) -> new Object[]{rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                        rs.getInt(5), rs.getString(6), rs.getObject(7, LocalDateTime.class), rs.getObject(8, LocalDateTime.class)}));
+
+        List<Object[]> orderRows = orders.stream()
+                .map(order -> new Object[]{order.id(), order.trackingCode(), order.customerName(), order.deliveryAddress()})
+                .toList();
+
+        onShard(targetShard, tx -> {
+            namedJdbcTemplate.update(DELETE_IDEMPOTENCY_SQL, params);
+            namedJdbcTemplate.update(DELETE_ORDERS_SQL, params);
+            jdbcTemplate.batchUpdate(INSERT_ORDER_SQL, orderRows);
+            jdbcTemplate.batchUpdate(INSERT_OCCURRENCE_SQL, occurrences);
+            jdbcTemplate.batchUpdate(INSERT_IDEMPOTENCY_SQL, idempotencyKeys);
+            return null;
+        });
+    }
+
+    /**
+     * Retorna as encomendas que existem no destino com o mesmo id e código de rastreio,
+     * com todas as ocorrências e chaves de idempotência (ainda válidas) da origem.
+     */
+    private List<OrderRow> verifyCopied(String sourceShard, String targetShard, List<OrderRow> orders) {
+        MapSqlParameterSource params = orderParams(orders);
+
+        Map<Long, List<Long>> occurrencesByOrder = new HashMap<>();
+        Map<String, List<String>> keysByCode = new HashMap<>();
+        onShard(sourceShard, tx -> {
+            namedJdbcTemplate.query(SELECT_OCCURRENCES_SQL, params, rs -> {
+                occurrencesByOrder.computeIfAbsent(rs.getLong(4), id -> new ArrayList<>()).add(rs.getLong(1));
+            });
+            namedJdbcTemplate.query(SELECT_LIVE_IDEMPOTENCY_KEYS_SQL, params, rs -> {
+                keysByCode.computeIfAbsent(rs.getString(2), code -> new ArrayList<>()).add(rs.getString(1));
+            });
+            return null;
+        });
+
+        List<Long> occurrenceIds = occurrencesByOrder.values().stream().flatMap(List::stream).toList();
+        List<String> recordKeys = keysByCode.values().stream().flatMap(List::stream).toList();
+
+        Map<Long, String> targetOrders = new HashMap<>();
+        Set<Long> targetOccurrences = new HashSet<>();
+        Set<String> targetKeys = new HashSet<>();
+        onShard(targetShard, tx -> {
+            namedJdbcTemplate.query(SELECT_ORDER_CODES_SQL, params, rs -> {
+                targetOrders.put(rs.getLong(1), rs.getString(2));
+            });
+            if (!occurrenceIds.isEmpty()) {
+                targetOccurrences.addAll(namedJdbcTemplate.queryForList(SELECT_OCCURRENCE_IDS_SQL,
+                        new MapSqlParameterSource("occurrenceIds", occurrenceIds), Long.class));
+            }
+            if (!recordKeys.isEmpty()) {
+                targetKeys.addAll(namedJdbcTemplate.queryForList(SELECT_IDEMPOTENCY_KEYS_SQL,
+                        new MapSqlParameterSource("recordKeys", recordKeys), String.class));
+            }
+            return null;
+        });
+
+        List<OrderRow> verified = new ArrayList<>();
+        for (OrderRow order : orders) {
+            boolean copied = order.trackingCode().equals(targetOrders.get(order.id()))
+                    && targetOccurrences.containsAll(occurrencesByOrder.getOrDefault(order.id(), List.of()))
+                    && targetKeys.containsAll(keysByCode.getOrDefault(order.trackingCode(), List.of()));
+            if (copied) {
+                verified.add(order);
+            } else {
+                log.error("Resharding: encomenda {} ({}) não confere no shard {}; mantida no shard {}",
+                        order.id(), order.trackingCode(), targetShard, sourceShard);
+            }
+        }
+        return verified;
+    }
+
+    private static MapSqlParameterSource orderParams(List<OrderRow> orders) {
+        return new MapSqlParameterSource()
+                .addValue("orderIds", orders.stream().map(OrderRow::id).toList())
+                .addValue("trackingCodes", orders.stream().map(OrderRow::trackingCode).toList());
+    }
+
+    private static List<String> shardsOf(ConsistentHashRing ring) {
+        return List.copyOf(ring.getShards());
+    }
+
+    private <T> T onShard(String shard, TransactionCallback<T> action) {
+        try (DataSourceRoutingContext.Scope ignored = DataSourceRoutingContext.bindShard(shard)) {
+            return transactionTemplate.execute(action);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record OrderRow(long id, String trackingCode, String customerName, String deliveryAddress) {
+    }
+}
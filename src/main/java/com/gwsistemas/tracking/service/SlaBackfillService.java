@@ -0,0 +1,277 @@
+package com.gwsistemas.tracking.service;
+
+import com.gwsistemas.tracking.analytics.SlaAggregate;
+import com.gwsistemas.tracking.config.DataSourceRoutingContext;
+import com.gwsistemas.tracking.config.ShardFanOut;
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import com.gwsistemas.tracking.exception.BusinessRuleException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Reconstrói os indicadores de SLA a partir do histórico de tb_occurrence.
+ * Só é lido o período mantido ({@code tracking.analytics.retention}), sempre no primário:
+ * uma réplica atrasada deixaria de fora as ocorrências mais recentes.
+ * O histórico é dividido em faixas de order_id (chunks) processadas em paralelo,
+ * cada uma gerando um {@link SlaAggregate} próprio, que depois são mesclados.
+ * Com sharding, cada shard é reconstruído em paralelo da mesma forma.
+ * Roda na inicialização da aplicação e, opcionalmente, de forma periódica
+ * ({@code tracking.analytics.backfill.refresh-cron}), para incluir as ocorrências gravadas por outras instâncias.
+ */
+
+@Service
+public class SlaBackfillService {
+
+    private static final Logger log = LoggerFactory.getLogger(SlaBackfillService.class);
+
+    private static final String ORDER_ID_RANGE_SQL =
+            "SELECT MIN(order_id), MAX(order_id) FROM tb_occurrence WHERE occurrence_timestamp >= ?";
+
+    // Ocorrências do período e, para cada encomenda com ocorrências no período,
+    // a última anterior a ele (usada só como origem da primeira transição)
+    private static final String CHUNK_SQL = """
+            SELECT oc.order_id, oc.id, oc.status, oc.occurrence_timestamp, o.tracking_code
+            FROM tb_occurrence oc
+            JOIN tb_order o ON o.id = oc.order_id
+            WHERE oc.order_id BETWEEN ? AND ? AND oc.occurrence_timestamp >= ?
+            UNION ALL
+            SELECT o.id, prev.id, prev.status, prev.occurrence_timestamp, o.tracking_code
+            FROM tb_order o
+            JOIN LATERAL (
+                SELECT p.id, p.status, p.occurrence_timestamp
+                FROM tb_occurrence p
+                WHERE p.order_id = o.id AND p.occurrence_timestamp < ?
+                ORDER BY p.occurrence_timestamp DESC, p.id DESC
+                LIMIT 1
+            ) prev ON TRUE
+            WHERE o.id BETWEEN ? AND ?
+              AND EXISTS (SELECT 1 FROM tb_occurrence r WHERE r.order_id = o.id AND r.occurrence_timestamp >= ?)
+            ORDER BY 1, 4, 2
+            """;
+
+    private final DeliveryAnalyticsService deliveryAnalyticsService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardFanOut shardFanOut;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService executor;
+    private final long chunkSize;
+    private final boolean backfillOnStartup;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public SlaBackfillService(DeliveryAnalyticsService deliveryAnalyticsService,
+                              JdbcTemplate jdbcTemplate,
+                              ShardFanOut shardFanOut,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${tracking.analytics.backfill.parallelism:4}") int parallelism,
+                              @Value("${tracking.analytics.backfill.chunk-size:5000}") long chunkSize,
+                              @Value("${tracking.analytics.backfill.on-startup:true}") boolean backfillOnStartup) {
+        this.deliveryAnalyticsService = deliveryAnalyticsService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardFanOut = shardFanOut;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // +1 thread para coordenar os chunks
+        this.executor = Executors.newFixedThreadPool(parallelism + 1);
+        this.chunkSize = chunkSize;
+        this.backfillOnStartup = backfillOnStartup;
+    }
+
+    /**
+     * Inicia a reconstrução em segundo plano.
+     *
+     * @throws BusinessRuleException se já houver uma reconstrução em andamento.
+     */
+    public void startBackfill() {
+        if (!running.compareAndSet(false, true)) {
+            throw new BusinessRuleException("Já existe uma reconstrução dos indicadores de SLA em andamento.");
+        }
+
+        executor.submit(() -> {
+            try {
+                runBackfill();
+            } catch (Exception e) {
+                deliveryAnalyticsService.abortRebuild();
+                log.error("Falha na reconstrução dos indicadores de SLA", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Reconstrói o histórico assim que a aplicação sobe (os indicadores ficam só em memória).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (backfillOnStartup) {
+            startBackfill();
+        }
+    }
+
+    /**
+     * Reconstrução periódica (desativada por padrão; útil com várias instâncias).
+     */
+    @Scheduled(cron = "${tracking.analytics.backfill.refresh-cron:-}")
+    public void refreshBackfill() {
+        if (!running.get()) {
+            try {
+                startBackfill();
+            } catch (BusinessRuleException e) {
+                log.debug("Reconstrução dos indicadores de SLA já em andamento");
+            }
+        }
+    }
+
+    private void runBackfill() {
+        deliveryAnalyticsService.beginRebuild();
+
+        LocalDateTime since = deliveryAnalyticsService.historyStart();
+        SlaAggregate history = new SlaAggregate(deliveryAnalyticsService.getWindow());
+        shardFanOut.onAllShards(() -> backfillShard(since)).forEach(history::merge);
+
+        deliveryAnalyticsService.completeRebuild(history);
+    }
+
+    /**
+     * Reconstrói o histórico de um shard (ou do banco único, sem sharding) em chunks paralelos.
+     */
+    private SlaAggregate backfillShard(LocalDateTime since) {
+        long[] range;
+        try (DataSourceRoutingContext.Scope ignored = DataSourceRoutingContext.forcePrimary()) {
+            range = readOnlyTransaction.execute(tx -> jdbcTemplate.queryForObject(ORDER_ID_RANGE_SQL,
+                    (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)}, since));
+        }
+
+        SlaAggregate history = new SlaAggregate(deliveryAnalyticsService.getWindow());
+        if (range == null || range[1] == 0) {
+            return history;
+        }
+
+        List<Future<SlaAggregate>> chunks = new ArrayList<>();
+        for (long start = range[0]; start <= range[1]; start += chunkSize) {
+            long chunkStart = start;
+            long chunkEnd = Math.min(start + chunkSize - 1, range[1]);
+            chunks.add(executor.submit(DataSourceRoutingContext.propagate(() -> processChunk(chunkStart, chunkEnd, since))));
+        }
+
+        try {
+            for (Future<SlaAggregate> chunk : chunks) {
+                history.merge(chunk.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconstrução dos indicadores de SLA interrompida.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falha ao processar um chunk do histórico.", e.getCause());
+        }
+
+        log.info("Indicadores de SLA reconstruídos a partir de {} chunks", chunks.size());
+        return history;
+    }
+
+    /**
+     * Lê as ocorrências de uma faixa de encomendas, em ordem, e registra as transições.
+     */
+    private SlaAggregate processChunk(long fromOrderId, long toOrderId, LocalDateTime since) {
+        SlaAggregate aggregate = new SlaAggregate(deliveryAnalyticsService.getWindow());
+
+        try (DataSourceRoutingContext.Scope ignored = DataSourceRoutingContext.forcePrimary()) {
+            readOnlyTransaction.executeWithoutResult(tx -> jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(CHUNK_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(OccurrenceExportService.STREAMING_FETCH_SIZE);
+                ps.setLong(1, fromOrderId);
+                ps.setLong(2, toOrderId);
+                ps.setObject(3, since);
+                ps.setObject(4, since);
+                ps.setLong(5, fromOrderId);
+                ps.setLong(6, toOrderId);
+                ps.setObject(7, since);
+                return ps;
+            }, new OrderTimelineHandler(aggregate, deliveryAnalyticsService, shardFanOut::isOwnedByCurrentShard, since)));
+        }
+
+        return aggregate;
+    }
+
+    /**
+     * Percorre as ocorrências ordenadas por encomenda e data, ligando cada uma à anterior.
+     * Ocorrências já registradas como eventos pendentes da reconstrução não são contadas de novo,
+     * nem as cópias de encomendas que pertencem a outro shard (durante um resharding).
+     * Ocorrências anteriores ao período servem só como origem da transição seguinte.
+     */
+    private static class OrderTimelineHandler implements RowCallbackHandler {
+
+        private final SlaAggregate aggregate;
+        private final DeliveryAnalyticsService deliveryAnalyticsService;
+        private final Predicate<String> ownedByShard;
+        private final LocalDateTime since;
+        private long currentOrderId = -1;
+        private boolean currentOrderOwned;
+        private TrackingStatus previousStatus;
+        private LocalDateTime previousTimestamp;
+
+        OrderTimelineHandler(SlaAggregate aggregate, DeliveryAnalyticsService deliveryAnalyticsService,
+                             Predicate<String> ownedByShard, LocalDateTime since) {
+            this.aggregate = aggregate;
+            this.deliveryAnalyticsService = deliveryAnalyticsService;
+            this.ownedByShard = ownedByShard;
+            this.since = since;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long orderId = rs.getLong(1);
+            long occurrenceId = rs.getLong(2);
+            TrackingStatus status = TrackingStatus.valueOf(rs.getString(3));
+            LocalDateTime timestamp = rs.getObject(4, LocalDateTime.class);
+
+            if (orderId != currentOrderId) {
+                currentOrderId = orderId;
+                currentOrderOwned = ownedByShard.test(rs.getString(5));
+                previousStatus = null;
+                previousTimestamp = null;
+            }
+            if (!currentOrderOwned) {
+                return;
+            }
+
+            if (!timestamp.isBefore(since) && deliveryAnalyticsService.claimForHistory(occurrenceId, timestamp)) {
+                aggregate.record(previousStatus, previousTimestamp, status, timestamp);
+            }
+            previousStatus = status;
+            previousTimestamp = timestamp;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,5 +1,8 @@
 package com.gwsistemas.tracking.service;
 
+import com.gwsistemas.tracking.config.DataSourceRoutingContext;
+import com.gwsistemas.tracking.config.ReadYourWritesTracker;
+import com.gwsistemas.tracking.config.ShardTransactionGuard;
 import com.gwsistemas.tracking.dto.input.OccurrenceCreateDTO;
 import com.gwsistemas.tracking.dto.input.OrderCreateDTO;
 import com.gwsistemas.tracking.dto.output.OccurrenceDTO;
@@ -33,12 +36,18 @@ public class TrackingService {
     private final OccurrenceRepository occurrenceRepository;
     private final OrderMapper orderMapper;
     private final OccurrenceMapper occurrenceMapper;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final DeliveryAnalyticsService deliveryAnalyticsService;
+    private final ShardTransactionGuard shardTransactionGuard;
 
-    public TrackingService(OrderRepository orderRepository, OccurrenceRepository occurrenceRepository, OrderMapper orderMapper, OccurrenceMapper occurrenceMapper) {
+    public TrackingService(OrderRepository orderRepository, OccurrenceRepository occurrenceRepository, OrderMapper orderMapper, OccurrenceMapper occurrenceMapper, ReadYourWritesTracker readYourWritesTracker, DeliveryAnalyticsService deliveryAnalyticsService, ShardTransactionGuard shardTransactionGuard) {
         this.orderRepository = orderRepository;
         this.occurrenceRepository = occurrenceRepository;
         this.orderMapper = orderMapper;
         this.occurrenceMapper = occurrenceMapper;
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.deliveryAnalyticsService = deliveryAnalyticsService;
+        this.shardTransactionGuard = shardTransactionGuard;
     }
 
     /**
@@ -52,11 +61,18 @@ public class TrackingService {
      */
     @Transactional
     public OccurrenceDTO registerNewOccurrence(String trackingCode, OccurrenceCreateDTO dto) {
-        Order order = findOrderByTrackingCode(trackingCode);
+        shardTransactionGuard.bindForTransaction(trackingCode);
+
+        // A linha da encomenda fica bloqueada até o commit: registros concorrentes no mesmo código
+        // (em qualquer instância) são serializados e cada um valida contra a última ocorrência gravada
+        Order order = orderRepository.findByTrackingCodeForUpdate(trackingCode)
+                .orElseThrow(() -> new ResourceNotFoundException("Encomenda não encontrada."));
         Optional<Occurrence> latestOccurrence = findLatestOccurrence(order);
 
         validateBusinessRules(latestOccurrence, dto);
         Occurrence saved = createAndSaveOccurrence(order, dto);
+        readYourWritesTracker.markWritten(trackingCode);
+        recordAnalytics(latestOccurrence, saved);
 
         return occurrenceMapper.toDTO(saved);
     }
@@ -72,12 +88,12 @@ public class TrackingService {
 
 
     /**
-     * Retorna a última ocorrência registrada para a encomenda
+     * Retorna a última ocorrência registrada para a encomenda.
+     * Consulta o banco em vez da coleção, que pode vir do cache de segundo nível
+     * desatualizada (carregada de uma réplica ou sem a escrita de outra instância).
      */
     private Optional<Occurrence> findLatestOccurrence(Order order) {
-        return order.getOccurrences()
-                .stream()
-                .max(Comparator.comparing(Occurrence::getOccurrenceTimestamp));
+        return occurrenceRepository.findFirstByOrderIdOrderByOccurrenceTimestampDescIdDesc(order.getId());
     }
 
 
@@ -115,6 +131,18 @@ public class TrackingService {
         return occurrenceRepository.save(occurrence);
     }
 
+    /**
+     * Envia a transição (ocorrência anterior -> nova ocorrência) para os indicadores de SLA.
+     */
+    private void recordAnalytics(Optional<Occurrence> previous, Occurrence saved) {
+        deliveryAnalyticsService.recordOccurrence(
+                saved.getId(),
+                previous.map(Occurrence::getStatus).orElse(null),
+                previous.map(Occurrence::getOccurrenceTimestamp).orElse(null),
+                saved.getStatus(),
+                saved.getOccurrenceTimestamp());
+    }
+
     /**
      * Consulta o status atual e a timeline completa de uma encomenda.
      *
@@ -122,15 +150,20 @@ public class TrackingService {
      * @return DTO com detalhes da encomenda e lista de ocorrências ordenada.
      * @throws ResourceNotFoundException se a encomenda não existir.
      */
+    @Transactional(readOnly = true)
     public OrderDetailsDTO getTrackingDetails(String trackingCode) {
+        shardTransactionGuard.bindForTransaction(trackingCode);
 
-        Order order = findOrderByTrackingCode(trackingCode);
-        OrderDetailsDTO dto = orderMapper.toDetailsDTO(order);
-        dto.getOccurrences().sort(
-                Comparator.comparing(OccurrenceDTO::getOccurrenceTimestamp).reversed()
-        );
+        // Logo após uma escrita neste código, a leitura vai para o primário (read-your-writes)
+        try (DataSourceRoutingContext.Scope ignored = readYourWritesTracker.primaryScopeIfRecentlyWritten(trackingCode)) {
+            Order order = findOrderByTrackingCode(trackingCode);
+            OrderDetailsDTO dto = orderMapper.toDetailsDTO(order);
+            dto.getOccurrences().sort(
+                    Comparator.comparing(OccurrenceDTO::getOccurrenceTimestamp).reversed()
+            );
 
-        return dto;
+            return dto;
+        }
     }
 
     /**
@@ -142,6 +175,8 @@ public class TrackingService {
      */
     @Transactional
     public OrderDetailsDTO createOrder(OrderCreateDTO dto) {
+        shardTransactionGuard.bindForTransaction(dto.getTrackingCode());
+
         Optional<Order> existingOrderOpt = orderRepository.findByTrackingCode(dto.getTrackingCode());
 
         if (existingOrderOpt.isPresent()) {
@@ -150,6 +185,7 @@ public class TrackingService {
 
         Order newOrder = orderMapper.toEntity(dto);
         Order savedOrder = orderRepository.save(newOrder);
+        readYourWritesTracker.markWritten(savedOrder.getTrackingCode());
 
         return orderMapper.toDetailsDTO(savedOrder);
     }
@@ -21,3 +21,51 @@ CREATE TABLE tb_occurrence (
         REFERENCES tb_order (id)
         ON DELETE CASCADE
 );
+
+-- Índice para a exportação de ocorrências por janela de tempo
+CREATE INDEX idx_occurrence_timestamp ON tb_occurrence (occurrence_timestamp);
+
+-- Tabela: tb_idempotency_key (respostas originais das requisições com "Idempotency-Key")
+CREATE TABLE tb_idempotency_key (
+    record_key VARCHAR(320) NOT NULL PRIMARY KEY,
+    operation VARCHAR(50) NOT NULL,
+    tracking_code VARCHAR(255) NOT NULL,
+    request_hash CHAR(64) NOT NULL,
+    response_status INT NOT NULL,
+    response_body TEXT NOT NULL,
+    created_at DATETIME NOT NULL,
+    expires_at DATETIME NOT NULL,
+    INDEX idx_idempotency_expires_at (expires_at)
+);
+
+-- Tabela: tb_idempotency_key_claim (com sharding, reserva de cada chave no shard de catálogo,
+-- para detectar o reuso da chave com outro código de rastreio, que cairia em outro shard)
+CREATE TABLE tb_idempotency_key_claim (
+    record_key VARCHAR(320) NOT NULL PRIMARY KEY,
+    request_hash CHAR(64) NOT NULL,
+    expires_at DATETIME NOT NULL,
+    INDEX idx_idempotency_claim_expires_at (expires_at)
+);
+
+-- Índice para percorrer a timeline de cada encomenda em ordem (backfill de SLA)
+CREATE INDEX idx_occurrence_order_timestamp ON tb_occurrence (order_id, occurrence_timestamp);
+
+-- Tabela: tb_shard_ring (estado versionado do anel, uma linha, gravada pelo resharding no shard de catálogo)
+CREATE TABLE tb_shard_ring (
+    id INT NOT NULL PRIMARY KEY,
+    version BIGINT NOT NULL,
+    active_shards VARCHAR(1000) NOT NULL,
+    target_shards VARCHAR(1000),
+    previous_shards VARCHAR(1000),
+    owner_instance VARCHAR(64)
+);
+
+-- Tabela: tb_shard_ring_ack (versão do anel confirmada por cada instância da aplicação, no shard de catálogo)
+CREATE TABLE tb_shard_ring_ack (
+    instance_id VARCHAR(64) NOT NULL PRIMARY KEY,
+    acked_version BIGINT NOT NULL,
+    heartbeat_at DATETIME NOT NULL
+);
+
+-- Índice para a listagem de encomendas por cliente (paginação por cursor no id)
+CREATE INDEX idx_order_customer ON tb_order (customer_name, id);
@@ -0,0 +1,60 @@
+package com.gwsistemas.tracking.analytics;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    /**
+     * Teste  Prova que os percentis ficam dentro do erro relativo
+     * dos buckets (12,5%).
+     */
+    @Test
+    void deveCalcularPercentis_DentroDoErroDosBuckets() {
+        LatencyHistogram histograma = new LatencyHistogram();
+        for (long segundos = 1; segundos <= 10_000; segundos++) {
+            histograma.record(segundos);
+        }
+
+        assertEquals(10_000, histograma.getCount());
+        assertEquals(5_000, histograma.percentile(50), 5_000 * 0.125);
+        assertEquals(9_000, histograma.percentile(90), 9_000 * 0.125);
+        assertEquals(9_900, histograma.percentile(99), 9_900 * 0.125);
+        assertEquals(10_000, histograma.percentile(100));
+    }
+
+    /**
+     * Teste  Prova que mesclar dois histogramas dá o mesmo resultado
+     * que gravar todos os valores em um só (usado no backfill em paralelo).
+     */
+    @Test
+    void deveProduzirMesmoResultado_QuandoHistogramasMesclados() {
+        LatencyHistogram completo = new LatencyHistogram();
+        LatencyHistogram primeiraMetade = new LatencyHistogram();
+        LatencyHistogram segundaMetade = new LatencyHistogram();
+
+        for (long segundos = 0; segundos < 2_000; segundos++) {
+            completo.record(segundos * 37);
+            (segundos % 2 == 0 ? primeiraMetade : segundaMetade).record(segundos * 37);
+        }
+        primeiraMetade.merge(segundaMetade);
+
+        assertEquals(completo.getCount(), primeiraMetade.getCount());
+        for (double percentil : new double[]{50, 90, 99}) {
+            assertEquals(completo.percentile(percentil), primeiraMetade.percentile(percentil));
+        }
+    }
+
+    /**
+     * Teste  Prova que os buckets são contínuos: cada valor cai
+     * em um bucket cujos limites o contêm.
+     */
+    @Test
+    void deveMapearValorParaBucketQueOContem() {
+        for (long valor : new long[]{0, 1, 7, 8, 15, 16, 17, 1_000, 86_400, Long.MAX_VALUE}) {
+            int indice = LatencyHistogram.bucketIndex(valor);
+            assertTrue(LatencyHistogram.lowerBound(indice) <= valor);
+            assertTrue(LatencyHistogram.upperBound(indice) >= valor);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.gwsistemas.tracking.config;
+
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    private static final int NOS_VIRTUAIS = 128;
+    private static final int CODIGOS = 30_000;
+
+    private String codigo(int i) {
+        return "BR" + i;
+    }
+
+    /**
+     * Teste  Prova que o mesmo código sempre vai para o mesmo shard,
+     * mesmo em anéis criados separadamente (ex: após reiniciar a aplicação).
+     */
+    @Test
+    void deveRetornarMesmoShard_QuandoAnelRecriado() {
+        ConsistentHashRing anel = new ConsistentHashRing(List.of("shard-1", "shard-2", "shard-3"), NOS_VIRTUAIS);
+        ConsistentHashRing recriado = new ConsistentHashRing(List.of("shard-1", "shard-2", "shard-3"), NOS_VIRTUAIS);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(anel.shardFor(codigo(i)), recriado.shardFor(codigo(i)));
+        }
+    }
+
+    /**
+     * Teste  Prova que os códigos ficam bem distribuídos entre os shards.
+     */
+    @Test
+    void deveDistribuirCodigos_QuandoVariosShards() {
+        ConsistentHashRing anel = new ConsistentHashRing(List.of("shard-1", "shard-2", "shard-3"), NOS_VIRTUAIS);
+
+        Map<String, Integer> porShard = new HashMap<>();
+        for (int i = 0; i < CODIGOS; i++) {
+            porShard.merge(anel.shardFor(codigo(i)), 1, Integer::sum);
+        }
+
+        assertEquals(3, porShard.size());
+        porShard.values().forEach(total -> assertEquals(CODIGOS / 3.0, total, CODIGOS / 3.0 * 0.25));
+    }
+
+    /**
+     * Teste  Prova que, ao adicionar um shard, só cerca de 1/N dos códigos mudam
+     * de lugar, e todos eles vão para o shard novo.
+     */
+    @Test
+    void deveMoverApenasParaNovoShard_QuandoShardAdicionado() {
+        ConsistentHashRing antes = new ConsistentHashRing(List.of("shard-1", "shard-2", "shard-3"), NOS_VIRTUAIS);
+        ConsistentHashRing depois = new ConsistentHashRing(List.of("shard-1", "shard-2", "shard-3", "shard-4"), NOS_VIRTUAIS);
+
+        int movidos = 0;
+        for (int i = 0; i < CODIGOS; i++) {
+            String origem = antes.shardFor(codigo(i));
+            String destino = depois.shardFor(codigo(i));
+            if (!origem.equals(destino)) {
+                assertEquals("shard-4", destino);
+                movidos++;
+            }
+        }
+
+        assertEquals(CODIGOS / 4.0, movidos, CODIGOS / 4.0 * 0.25);
+    }
+}
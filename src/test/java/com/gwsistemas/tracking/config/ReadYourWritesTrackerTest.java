@@ -0,0 +1,64 @@
+package com.gwsistemas.tracking.config;
+
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadYourWritesTrackerTest {
+
+    private final String CODIGO_RASTREIO = "BR100";
+
+    private ReadYourWritesTracker tracker(boolean enabled, Duration janela) {
+        ReplicaDataSourceProperties properties = new ReplicaDataSourceProperties();
+        properties.setEnabled(enabled);
+        properties.setReadYourWritesWindow(janela);
+        return new ReadYourWritesTracker(properties, new ShardingProperties());
+    }
+
+    /**
+     * Teste  Prova que, logo após uma escrita, as leituras do código vão para o primário,
+     * e as dos outros códigos continuam nas réplicas.
+     */
+    @Test
+    void deveForcarPrimario_QuandoCodigoEscritoDentroDaJanela() {
+        ReadYourWritesTracker tracker = tracker(true, Duration.ofMinutes(1));
+        tracker.markWritten(CODIGO_RASTREIO);
+
+        try (DataSourceRoutingContext.Scope ignored = tracker.primaryScopeIfRecentlyWritten(CODIGO_RASTREIO)) {
+            assertTrue(DataSourceRoutingContext.isPrimaryForced());
+        }
+        assertFalse(DataSourceRoutingContext.isPrimaryForced());
+
+        try (DataSourceRoutingContext.Scope ignored = tracker.primaryScopeIfRecentlyWritten("BR200")) {
+            assertFalse(DataSourceRoutingContext.isPrimaryForced());
+        }
+    }
+
+    /**
+     * Teste  Prova que, passada a janela, as leituras do código voltam para as réplicas.
+     */
+    @Test
+    void deveLiberarReplicas_QuandoJanelaExpirada() throws InterruptedException {
+        ReadYourWritesTracker tracker = tracker(true, Duration.ofMillis(50));
+        tracker.markWritten(CODIGO_RASTREIO);
+        assertTrue(tracker.wasRecentlyWritten(CODIGO_RASTREIO));
+
+        Thread.sleep(100);
+
+        assertFalse(tracker.wasRecentlyWritten(CODIGO_RASTREIO));
+        try (DataSourceRoutingContext.Scope ignored = tracker.primaryScopeIfRecentlyWritten(CODIGO_RASTREIO)) {
+            assertFalse(DataSourceRoutingContext.isPrimaryForced());
+        }
+    }
+
+    /**
+     * Teste  Prova que, sem réplicas configuradas, nada é registrado.
+     */
+    @Test
+    void deveIgnorarEscritas_QuandoReplicasDesativadas() {
+        ReadYourWritesTracker tracker = tracker(false, Duration.ofMinutes(1));
+        tracker.markWritten(CODIGO_RASTREIO);
+
+        assertFalse(tracker.wasRecentlyWritten(CODIGO_RASTREIO));
+    }
+}
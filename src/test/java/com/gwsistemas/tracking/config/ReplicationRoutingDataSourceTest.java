@@ -0,0 +1,61 @@
+package com.gwsistemas.tracking.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import javax.sql.DataSource;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ReplicationRoutingDataSourceTest {
+
+    private final DataSource primario = mock(DataSource.class);
+    private final DataSource replica1 = mock(DataSource.class);
+    private final DataSource replica2 = mock(DataSource.class);
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    /**
+     * Teste  Prova que transações somente leitura são distribuídas entre as réplicas (round-robin).
+     */
+    @Test
+    void deveAlternarEntreReplicas_QuandoTransacaoSomenteLeitura() {
+        ReplicationRoutingDataSource dataSource = new ReplicationRoutingDataSource(primario, List.of(replica1, replica2));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertEquals("replica-0", dataSource.determineCurrentLookupKey());
+        assertEquals("replica-1", dataSource.determineCurrentLookupKey());
+        assertEquals("replica-0", dataSource.determineCurrentLookupKey());
+    }
+
+    /**
+     * Teste  Prova que escritas e leituras com o primário forçado vão para o primário.
+     */
+    @Test
+    void deveUsarPrimario_QuandoEscritaOuPrimarioForcado() {
+        ReplicationRoutingDataSource dataSource = new ReplicationRoutingDataSource(primario, List.of(replica1, replica2));
+
+        assertEquals(ReplicationRoutingDataSource.PRIMARY, dataSource.determineCurrentLookupKey());
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try (DataSourceRoutingContext.Scope ignored = DataSourceRoutingContext.forcePrimary()) {
+            assertEquals(ReplicationRoutingDataSource.PRIMARY, dataSource.determineCurrentLookupKey());
+        }
+        assertEquals("replica-0", dataSource.determineCurrentLookupKey());
+    }
+
+    /**
+     * Teste  Prova que, sem réplicas, até as leituras vão para o primário.
+     */
+    @Test
+    void deveUsarPrimario_QuandoSemReplicas() {
+        ReplicationRoutingDataSource dataSource = new ReplicationRoutingDataSource(primario, List.of());
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertEquals(ReplicationRoutingDataSource.PRIMARY, dataSource.determineCurrentLookupKey());
+    }
+}
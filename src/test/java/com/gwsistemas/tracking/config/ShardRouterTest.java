@@ -0,0 +1,65 @@
+package com.gwsistemas.tracking.config;
+
+import com.gwsistemas.tracking.exception.ShardMovingException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRouterTest {
+
+    private final ShardRouter router = new ShardRouter(List.of("shard-1", "shard-2"), List.of("shard-1"), 64);
+
+    /**
+     * Teste  Prova que, com um destino definido, escritas nos códigos que mudam de shard são recusadas,
+     * enquanto leituras e escritas nos códigos que não mudam continuam no shard de origem.
+     */
+    @Test
+    void deveRecusarEscrita_QuandoCodigoEstaMudandoDeShard() {
+        router.adopt(1, List.of("shard-1"), List.of("shard-1", "shard-2"), null);
+        String moving = codeOwnedBy(router.getState().target(), "shard-2");
+        String staying = codeOwnedBy(router.getState().target(), "shard-1");
+
+        assertThrows(ShardMovingException.class, () -> router.enterTransaction(moving, false));
+        assertEquals("shard-1", router.enterTransaction(moving, true).shard());
+        assertEquals("shard-1", router.enterTransaction(staying, false).shard());
+    }
+
+    /**
+     * Teste  Prova que a instância só confirma uma versão nova depois que as transações
+     * iniciadas nas versões anteriores terminaram.
+     */
+    @Test
+    void deveConfirmarVersaoNova_SomenteAposTransacoesAnterioresTerminarem() {
+        ShardRouter.Entry emAndamento = router.enterTransaction("BR-1", false);
+        router.adopt(1, List.of("shard-1"), List.of("shard-1", "shard-2"), null);
+
+        assertEquals(0, router.drainedVersion());
+
+        router.exitTransaction(emAndamento.version());
+        assertEquals(1, router.drainedVersion());
+    }
+
+    /**
+     * Teste  Prova que um estado mais antigo que o atual é ignorado.
+     */
+    @Test
+    void deveIgnorarEstado_QuandoVersaoForAntiga() {
+        router.adopt(2, List.of("shard-1", "shard-2"), null, List.of("shard-1"));
+        router.adopt(1, List.of("shard-1"), List.of("shard-1", "shard-2"), null);
+
+        assertEquals(2, router.getState().version());
+        assertNull(router.getState().target());
+        assertEquals(2, router.getRing().getShards().size());
+    }
+
+    private static String codeOwnedBy(ConsistentHashRing ring, String shard) {
+        return IntStream.range(0, 1000)
+                .mapToObj(i -> "BR-" + i)
+                .filter(code -> ring.shardFor(code).equals(shard))
+                .findFirst()
+                .orElseThrow();
+    }
+}
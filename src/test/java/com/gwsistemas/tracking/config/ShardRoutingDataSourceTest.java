@@ -0,0 +1,55 @@
+package com.gwsistemas.tracking.config;
+
+import org.junit.jupiter.api.Test;
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ShardRoutingDataSourceTest {
+
+    private final ShardRouter router = new ShardRouter(List.of("shard-1", "shard-2"), List.of("shard-1", "shard-2"), 64);
+    private final ShardRoutingDataSource dataSource = new ShardRoutingDataSource(router,
+            Map.of("shard-1", mock(DataSource.class), "shard-2", mock(DataSource.class)));
+
+    /**
+     * Teste  Prova que, sem shard no contexto, as operações vão para o shard de catálogo.
+     */
+    @Test
+    void deveUsarShardDeCatalogo_QuandoSemShardNoContexto() {
+        assertNull(DataSourceRoutingContext.currentShard());
+        assertEquals("shard-1", dataSource.determineCurrentLookupKey());
+    }
+
+    /**
+     * Teste  Prova que o nome do shard no contexto é usado diretamente, e que o escopo restaura o anterior.
+     */
+    @Test
+    void deveUsarShardInformado_QuandoNomeNoContexto() {
+        try (DataSourceRoutingContext.Scope ignored = DataSourceRoutingContext.bindShard("shard-2")) {
+            assertEquals("shard-2", dataSource.determineCurrentLookupKey());
+        }
+        assertEquals("shard-1", dataSource.determineCurrentLookupKey());
+    }
+
+    /**
+     * Teste  Prova que o código de rastreio é roteado pelo anel atual, inclusive depois de uma troca do anel.
+     */
+    @Test
+    void deveRotearPeloAnel_QuandoCodigoNoContexto() {
+        String codigo = IntStream.range(0, 1000)
+                .mapToObj(i -> "BR-" + i)
+                .filter(c -> router.shardFor(c).equals("shard-2"))
+                .findFirst()
+                .orElseThrow();
+
+        try (DataSourceRoutingContext.Scope ignored = DataSourceRoutingContext.bindShardKey(codigo)) {
+            assertEquals("shard-2", dataSource.determineCurrentLookupKey());
+
+            router.adopt(1, List.of("shard-1"), null, List.of("shard-1", "shard-2"));
+            assertEquals("shard-1", dataSource.determineCurrentLookupKey());
+        }
+    }
+}
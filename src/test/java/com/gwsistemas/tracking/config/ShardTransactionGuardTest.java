@@ -0,0 +1,89 @@
+package com.gwsistemas.tracking.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShardTransactionGuardTest {
+
+    private final ShardRouter router = new ShardRouter(List.of("shard-1", "shard-2"), List.of("shard-1", "shard-2"), 64);
+    private final ShardRoutingDataSource dataSource = new ShardRoutingDataSource(router,
+            Map.of("shard-1", mock(DataSource.class), "shard-2", mock(DataSource.class)));
+    private final ShardTransactionGuard guard = guardCom(router);
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(gerenciadorComSincronizacao());
+
+    /**
+     * Teste  Prova que a transação que já obteve uma conexão (com o shard escolhido sem a versão do anel)
+     * não é direcionada de novo em silêncio: a chamada falha.
+     */
+    @Test
+    void deveFalhar_QuandoTransacaoJaObteveConexao() {
+        transactionTemplate.executeWithoutResult(tx -> {
+            dataSource.determineCurrentLookupKey();
+
+            assertThrows(IllegalStateException.class, () -> guard.bindForTransaction("BR-1"));
+        });
+
+        // A marca da conexão vale só para aquela transação
+        transactionTemplate.executeWithoutResult(tx -> {
+            guard.bindForTransaction("BR-1");
+            assertEquals(router.shardFor("BR-1"), dataSource.determineCurrentLookupKey());
+        });
+        assertNull(DataSourceRoutingContext.currentShard());
+    }
+
+    /**
+     * Teste  Prova que repetir a chamada com o mesmo código na mesma transação não faz nada,
+     * e que outro código na mesma transação é recusado.
+     */
+    @Test
+    void deveIgnorarMesmoCodigoERecusarOutro_QuandoTransacaoJaDirecionada() {
+        transactionTemplate.executeWithoutResult(tx -> {
+            guard.bindForTransaction("BR-1");
+            dataSource.determineCurrentLookupKey();
+
+            assertDoesNotThrow(() -> guard.bindForTransaction("BR-1"));
+            assertThrows(IllegalStateException.class, () -> guard.bindForTransaction("BR-2"));
+        });
+
+        assertNull(DataSourceRoutingContext.currentShard());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ShardTransactionGuard guardCom(ShardRouter router) {
+        ObjectProvider<ShardRouter> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(router);
+        return new ShardTransactionGuard(provider);
+    }
+
+    //Gerenciador sem banco, mas com sincronização de transação ativa (como o JpaTransactionManager)
+    private static AbstractPlatformTransactionManager gerenciadorComSincronizacao() {
+        return new AbstractPlatformTransactionManager() {
+            @Override
+            protected Object doGetTransaction() {
+                return new Object();
+            }
+
+            @Override
+            protected void doBegin(Object transaction, TransactionDefinition definition) {
+            }
+
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+            }
+
+            @Override
+            protected void doRollback(DefaultTransactionStatus status) {
+            }
+        };
+    }
+}
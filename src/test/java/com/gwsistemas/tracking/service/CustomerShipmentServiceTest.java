@@ -0,0 +1,94 @@
+package com.gwsistemas.tracking.service;
+
+import com.gwsistemas.tracking.config.ShardFanOut;
+import com.gwsistemas.tracking.dto.output.CustomerShipmentPageDTO;
+import com.gwsistemas.tracking.dto.output.OrderSummaryDTO;
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import com.gwsistemas.tracking.exception.BusinessRuleException;
+import com.gwsistemas.tracking.repository.OrderRepository;
+import com.gwsistemas.tracking.repository.OrderSummaryView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerShipmentServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ShardFanOut shardFanOut;
+
+    private CustomerShipmentService customerShipmentService;
+
+    private final String CLIENTE = "Cliente Teste";
+
+    @BeforeEach
+    void setUp() {
+        customerShipmentService = new CustomerShipmentService(orderRepository, shardFanOut, transactionManager, 100);
+    }
+
+    private OrderSummaryView encomenda(long id, String status) {
+        return new OrderSummaryView() {
+            public Long getId() { return id; }
+            public String getTrackingCode() { return "BR" + id; }
+            public String getDeliveryAddress() { return "Rua Teste, " + id; }
+            public String getCurrentStatus() { return status; }
+            public LocalDateTime getLastUpdate() { return LocalDateTime.of(2025, 1, 10, 14, 30); }
+        };
+    }
+
+    /**
+     * Teste  Prova que as páginas de vários shards são mescladas por id (mais novas primeiro)
+     * e que o cursor aponta para a última encomenda da página quando há mais resultados.
+     */
+    @Test
+    void deveMesclarShardsERetornarCursor_QuandoExistemMaisEncomendas() {
+        when(shardFanOut.onAllShards(any())).thenReturn(List.of(
+                List.of(encomenda(9, "ENTREGUE"), encomenda(5, "EM_TRANSITO"), encomenda(1, "SAIDA_PARA_ENTREGA")),
+                List.of(encomenda(8, "EM_TRANSITO"), encomenda(4, "SAIDA_PARA_ENTREGA"))));
+
+        CustomerShipmentPageDTO pagina = customerShipmentService.listShipments(CLIENTE, null, 3);
+
+        assertEquals(List.of("BR9", "BR8", "BR5"), pagina.getItems().stream().map(OrderSummaryDTO::getTrackingCode).toList());
+        assertEquals(TrackingStatus.ENTREGUE, pagina.getItems().get(0).getCurrentStatus());
+        assertEquals(5L, pagina.getNextCursor());
+    }
+
+    /**
+     * Teste  Prova que a consulta usa o cursor e que a última página não tem próximo cursor.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void deveRetornarCursorNulo_QuandoUltimaPagina() {
+        when(shardFanOut.onAllShards(any())).thenAnswer(invocation ->
+                List.of(((Supplier<Object>) invocation.getArgument(0)).get()));
+        when(orderRepository.findCustomerPage(CLIENTE, 5L, 4)).thenReturn(List.of(encomenda(4, "SAIDA_PARA_ENTREGA")));
+
+        CustomerShipmentPageDTO pagina = customerShipmentService.listShipments(CLIENTE, 5L, 3);
+
+        assertEquals(1, pagina.getItems().size());
+        assertNull(pagina.getNextCursor());
+    }
+
+    /**
+     * Teste  Prova que um tamanho de página fora do limite é rejeitado sem consultar o banco.
+     */
+    @Test
+    void deveLancarExcecao_QuandoTamanhoDaPaginaInvalido() {
+        assertThrows(BusinessRuleException.class, () -> customerShipmentService.listShipments(CLIENTE, null, 101));
+
+        verifyNoInteractions(shardFanOut, orderRepository);
+    }
+}
@@ -0,0 +1,82 @@
+package com.gwsistemas.tracking.service;
+
+import com.gwsistemas.tracking.analytics.SlaAggregate;
+import com.gwsistemas.tracking.dto.output.SlaWindowDTO;
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeliveryAnalyticsServiceTest {
+
+    private DeliveryAnalyticsService deliveryAnalyticsService;
+
+    private LocalDateTime agora;
+
+    @BeforeEach
+    void setUp() {
+        deliveryAnalyticsService = new DeliveryAnalyticsService(Duration.ofDays(1), Duration.ofDays(90), Duration.ofMinutes(10));
+        agora = LocalDateTime.now();
+    }
+
+    private long totalEntregues() {
+        SlaWindowDTO resumo = deliveryAnalyticsService.getSummary(agora.minusDays(2), agora.plusDays(2));
+        return resumo.getStatusCounts().get(TrackingStatus.ENTREGUE);
+    }
+
+    /**
+     * Teste  Prova que um evento confirmado durante a reconstrução é mantido,
+     * mesmo com data anterior ao início da reconstrução e sem ter sido lido pelo backfill.
+     */
+    @Test
+    void deveManterEvento_QuandoConfirmadoDuranteReconstrucaoSemSerLidoPeloBackfill() {
+        deliveryAnalyticsService.beginRebuild();
+        deliveryAnalyticsService.recordOccurrence(1L, TrackingStatus.EM_TRANSITO, agora.minusHours(2),
+                TrackingStatus.ENTREGUE, agora.minusSeconds(1));
+
+        deliveryAnalyticsService.completeRebuild(new SlaAggregate(Duration.ofDays(1)));
+
+        assertEquals(1, totalEntregues());
+    }
+
+    /**
+     * Teste  Prova que um evento lido pelo backfill e também confirmado durante a reconstrução
+     * é contado uma única vez, em qualquer ordem.
+     */
+    @Test
+    void deveContarUmaVez_QuandoEventoLidoPeloBackfillEConfirmadoDuranteReconstrucao() {
+        deliveryAnalyticsService.beginRebuild();
+        SlaAggregate historico = new SlaAggregate(Duration.ofDays(1));
+
+        // backfill lê antes do afterCommit
+        if (deliveryAnalyticsService.claimForHistory(1L, agora)) {
+            historico.record(null, null, TrackingStatus.ENTREGUE, agora);
+        }
+        deliveryAnalyticsService.recordOccurrence(1L, null, null, TrackingStatus.ENTREGUE, agora);
+
+        // afterCommit antes de o backfill ler
+        deliveryAnalyticsService.recordOccurrence(2L, null, null, TrackingStatus.ENTREGUE, agora);
+        if (deliveryAnalyticsService.claimForHistory(2L, agora)) {
+            historico.record(null, null, TrackingStatus.ENTREGUE, agora);
+        }
+
+        deliveryAnalyticsService.completeRebuild(historico);
+
+        assertEquals(2, totalEntregues());
+    }
+
+    /**
+     * Teste  Prova que as respostas indicam se o histórico já foi reconstruído.
+     */
+    @Test
+    void deveIndicarHistoricoIncompleto_AteAPrimeiraReconstrucao() {
+        assertFalse(deliveryAnalyticsService.getSummary(agora.minusDays(1), agora).isHistoryComplete());
+
+        deliveryAnalyticsService.beginRebuild();
+        deliveryAnalyticsService.completeRebuild(new SlaAggregate(Duration.ofDays(1)));
+
+        assertTrue(deliveryAnalyticsService.getSummary(agora.minusDays(1), agora).isHistoryComplete());
+    }
+}
@@ -0,0 +1,282 @@
+package com.gwsistemas.tracking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gwsistemas.tracking.config.ConsistentHashRing;
+import com.gwsistemas.tracking.config.DataSourceRoutingContext;
+import com.gwsistemas.tracking.config.ShardFanOut;
+import com.gwsistemas.tracking.config.ShardRouter;
+import com.gwsistemas.tracking.config.ShardTransactionGuard;
+import com.gwsistemas.tracking.dto.input.OccurrenceCreateDTO;
+import com.gwsistemas.tracking.dto.output.OccurrenceDTO;
+import com.gwsistemas.tracking.enums.IdempotentOperation;
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import com.gwsistemas.tracking.exception.IdempotencyConflictException;
+import com.gwsistemas.tracking.exception.ShardMovingException;
+import com.gwsistemas.tracking.model.IdempotencyRecord;
+import com.gwsistemas.tracking.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ShardFanOut shardFanOut;
+    @Mock
+    private ShardTransactionGuard shardTransactionGuard;
+
+    private IdempotencyService idempotencyService;
+
+    private final String CODIGO_RASTREIO = "BR100";
+    private final String CHAVE = "retry-123";
+
+    private AtomicInteger execucoes;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        idempotencyService = new IdempotencyService(idempotencyRecordRepository, transactionManager,
+                objectMapper, shardFanOut, shardTransactionGuard, Duration.ofHours(24), 100);
+        execucoes = new AtomicInteger();
+    }
+
+    private Supplier<ResponseEntity<OccurrenceDTO>> acaoRegistrar() {
+        return () -> {
+            execucoes.incrementAndGet();
+            OccurrenceDTO dto = new OccurrenceDTO(TrackingStatus.EM_TRANSITO, LocalDateTime.of(2025, 1, 10, 14, 30));
+            return ResponseEntity.status(HttpStatus.CREATED).body(dto);
+        };
+    }
+
+    /**
+     * Teste  Prova que um retry com a mesma chave devolve a resposta original
+     * sem executar a operação novamente.
+     */
+    @Test
+    void deveReproduzirRespostaOriginal_QuandoChaveRepetida() {
+        OccurrenceCreateDTO entrada = new OccurrenceCreateDTO(TrackingStatus.EM_TRANSITO);
+
+        ResponseEntity<OccurrenceDTO> primeira = idempotencyService.execute(CHAVE, IdempotentOperation.REGISTER_OCCURRENCE,
+                CODIGO_RASTREIO, entrada, OccurrenceDTO.class, acaoRegistrar());
+        ResponseEntity<OccurrenceDTO> repetida = idempotencyService.execute(CHAVE, IdempotentOperation.REGISTER_OCCURRENCE,
+                CODIGO_RASTREIO, entrada, OccurrenceDTO.class, acaoRegistrar());
+
+        assertEquals(1, execucoes.get());
+        assertEquals(HttpStatus.CREATED, repetida.getStatusCode());
+        assertEquals(primeira.getBody(), repetida.getBody());
+        assertEquals("true", repetida.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+
+        verify(idempotencyRecordRepository, times(1)).saveAndFlush(any(IdempotencyRecord.class));
+    }
+
+    /**
+     * Teste  Prova que reutilizar a chave com outro conteúdo é rejeitado.
+     */
+    @Test
+    void deveLancarExcecao_QuandoChaveReutilizadaComOutraRequisicao() {
+        idempotencyService.execute(CHAVE, IdempotentOperation.REGISTER_OCCURRENCE, CODIGO_RASTREIO,
+                new OccurrenceCreateDTO(TrackingStatus.EM_TRANSITO), OccurrenceDTO.class, acaoRegistrar());
+
+        assertThrows(IdempotencyConflictException.class, () -> {
+            idempotencyService.execute(CHAVE, IdempotentOperation.REGISTER_OCCURRENCE, CODIGO_RASTREIO,
+                    new OccurrenceCreateDTO(TrackingStatus.ENTREGUE), OccurrenceDTO.class, acaoRegistrar());
+        });
+
+        assertEquals(1, execucoes.get());
+    }
+
+    /**
+     * Teste  Prova que, com sharding, reutilizar a chave com outro código de rastreio (que cai em outro shard)
+     * é rejeitado pela reserva no shard de catálogo, sem executar a operação.
+     */
+    @Test
+    void deveLancarExcecao_QuandoChaveReutilizadaComOutroCodigoEmOutroShard() {
+        when(shardFanOut.isSharded()).thenReturn(true);
+        when(shardFanOut.catalogShard()).thenReturn("shard-1");
+        when(idempotencyRecordRepository.findClaimHash(eq("REGISTER_OCCURRENCE:" + CHAVE), any())).thenReturn(Optional.empty());
+        OccurrenceCreateDTO entrada = new OccurrenceCreateDTO(TrackingStatus.EM_TRANSITO);
+
+        idempotencyService.execute(CHAVE, IdempotentOperation.REGISTER_OCCURRENCE, CODIGO_RASTREIO,
+                entrada, OccurrenceDTO.class, acaoRegistrar());
+
+        ArgumentCaptor<String> hashReservado = ArgumentCaptor.forClass(String.class);
+        verify(idempotencyRecordRepository).insertClaim(eq("REGISTER_OCCURRENCE:" + CHAVE), hashReservado.capture(), any());
+        when(idempotencyRecordRepository.findClaimHash(eq("REGISTER_OCCURRENCE:" + CHAVE), any()))
+                .thenReturn(Optional.of(hashReservado.getValue()));
+
+        // Outra instância: sem a resposta em memória
+        IdempotencyService outraInstancia = new IdempotencyService(idempotencyRecordRepository, transactionManager,
+                new ObjectMapper().findAndRegisterModules(), shardFanOut, shardTransactionGuard, Duration.ofHours(24), 100);
+
+        assertThrows(IdempotencyConflictException.class, () -> outraInstancia.execute(CHAVE,
+                IdempotentOperation.REGISTER_OCCURRENCE, "BR200", entrada, OccurrenceDTO.class, acaoRegistrar()));
+
+        assertEquals(1, execucoes.get());
+        verify(idempotencyRecordRepository, never()).deleteClaim(any(), any());
+    }
+
+    /**
+     * Teste  Prova que, com sharding, a reserva é liberada quando a operação falha,
+     * para que a chave possa ser usada de novo.
+     */
+    @Test
+    void deveLiberarReserva_QuandoOperacaoNaoTemSucesso() {
+        when(shardFanOut.isSharded()).thenReturn(true);
+        when(shardFanOut.catalogShard()).thenReturn("shard-1");
+        when(idempotencyRecordRepository.findClaimHash(any(), any())).thenReturn(Optional.empty());
+
+        ResponseEntity<OccurrenceDTO> resposta = idempotencyService.execute(CHAVE, IdempotentOperation.REGISTER_OCCURRENCE,
+                CODIGO_RASTREIO, new OccurrenceCreateDTO(TrackingStatus.EM_TRANSITO), OccurrenceDTO.class,
+                () -> ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+
+        assertEquals(HttpStatus.BAD_REQUEST, resposta.getStatusCode());
+        verify(idempotencyRecordRepository).deleteClaim(eq("REGISTER_OCCURRENCE:" + CHAVE), any());
+        verify(idempotencyRecordRepository, never()).saveAndFlush(any(IdempotencyRecord.class));
+    }
+
+    /**
+     * Teste  Prova que, sem o header, a operação é executada normalmente
+     * e nada é guardado.
+     */
+    @Test
+    void deveExecutarSemArmazenar_QuandoSemChave() {
+        OccurrenceCreateDTO entrada = new OccurrenceCreateDTO(TrackingStatus.EM_TRANSITO);
+
+        idempotencyService.execute(null, IdempotentOperation.REGISTER_OCCURRENCE, CODIGO_RASTREIO,
+                entrada, OccurrenceDTO.class, acaoRegistrar());
+        idempotencyService.execute(null, IdempotentOperation.REGISTER_OCCURRENCE, CODIGO_RASTREIO,
+                entrada, OccurrenceDTO.class, acaoRegistrar());
+
+        assertEquals(2, execucoes.get());
+        verifyNoInteractions(idempotencyRecordRepository);
+    }
+
+    /**
+     * Teste  Prova que, com sharding, a transação entra no anel antes da consulta da chave:
+     * se o anel muda entre a consulta e a operação, a transação continua contada na versão antiga
+     * (o resharding espera por ela) e a operação usa o mesmo shard da consulta.
+     */
+    @Test
+    void deveManterVersaoDoAnel_QuandoAnelMudaEntreConsultaEOperacao() {
+        ShardRouter router = new ShardRouter(List.of("shard-1", "shard-2"), List.of("shard-1"), 64);
+        ShardTransactionGuard guard = guardCom(router);
+        String codigo = codigoQueMudaParaShard2(router);
+        IdempotencyService servicoComShards = servicoCom(guard);
+
+        AtomicReference<String> shardNaConsulta = new AtomicReference<>();
+        when(idempotencyRecordRepository.findById("REGISTER_OCCURRENCE:" + CHAVE)).thenAnswer(invocation -> {
+            shardNaConsulta.set(DataSourceRoutingContext.currentShard().shardName());
+            // O resharding define o destino logo depois da consulta
+            router.adopt(1, List.of("shard-1"), List.of("shard-1", "shard-2"), null);
+            return Optional.empty();
+        });
+
+        AtomicReference<String> shardNaOperacao = new AtomicReference<>();
+        AtomicLong versaoConfirmavelNaOperacao = new AtomicLong(-1);
+        ResponseEntity<OccurrenceDTO> resposta = servicoComShards.execute(CHAVE, IdempotentOperation.REGISTER_OCCURRENCE,
+                codigo, new OccurrenceCreateDTO(TrackingStatus.EM_TRANSITO), OccurrenceDTO.class, () -> {
+                    // Como no TrackingService: a mesma transação, o mesmo código
+                    guard.bindForTransaction(codigo);
+                    shardNaOperacao.set(DataSourceRoutingContext.currentShard().shardName());
+                    versaoConfirmavelNaOperacao.set(router.drainedVersion());
+                    return acaoRegistrar().get();
+                });
+
+        assertEquals(HttpStatus.CREATED, resposta.getStatusCode());
+        assertEquals("shard-1", shardNaConsulta.get());
+        assertEquals("shard-1", shardNaOperacao.get());
+        assertEquals(0, versaoConfirmavelNaOperacao.get());
+        assertEquals(1, router.drainedVersion());
+        assertNull(DataSourceRoutingContext.currentShard());
+    }
+
+    /**
+     * Teste  Prova que, com sharding, uma escrita em um código que está mudando de shard é recusada
+     * antes da consulta da chave, sem executar a operação.
+     */
+    @Test
+    void deveRecusarAntesDaConsulta_QuandoCodigoEstaMudandoDeShard() {
+        ShardRouter router = new ShardRouter(List.of("shard-1", "shard-2"), List.of("shard-1"), 64);
+        String codigo = codigoQueMudaParaShard2(router);
+        router.adopt(1, List.of("shard-1"), List.of("shard-1", "shard-2"), null);
+        IdempotencyService servicoComShards = servicoCom(guardCom(router));
+
+        assertThrows(ShardMovingException.class, () -> servicoComShards.execute(CHAVE,
+                IdempotentOperation.REGISTER_OCCURRENCE, codigo, new OccurrenceCreateDTO(TrackingStatus.EM_TRANSITO),
+                OccurrenceDTO.class, acaoRegistrar()));
+
+        assertEquals(0, execucoes.get());
+        verify(idempotencyRecordRepository, never()).findById(any());
+    }
+
+    private IdempotencyService servicoCom(ShardTransactionGuard guard) {
+        return new IdempotencyService(idempotencyRecordRepository, gerenciadorComSincronizacao(),
+                new ObjectMapper().findAndRegisterModules(), shardFanOut, guard, Duration.ofHours(24), 100);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ShardTransactionGuard guardCom(ShardRouter router) {
+        ObjectProvider<ShardRouter> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(router);
+        return new ShardTransactionGuard(provider);
+    }
+
+    private static String codigoQueMudaParaShard2(ShardRouter router) {
+        ConsistentHashRing destino = router.newRing(List.of("shard-1", "shard-2"));
+        return IntStream.range(0, 1000)
+                .mapToObj(i -> "BR-" + i)
+                .filter(c -> destino.shardFor(c).equals("shard-2"))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    //Gerenciador sem banco, mas com sincronização de transação ativa (como o JpaTransactionManager)
+    private static PlatformTransactionManager gerenciadorComSincronizacao() {
+        return new AbstractPlatformTransactionManager() {
+            @Override
+            protected Object doGetTransaction() {
+                return new Object();
+            }
+
+            @Override
+            protected void doBegin(Object transaction, TransactionDefinition definition) {
+            }
+
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+            }
+
+            @Override
+            protected void doRollback(DefaultTransactionStatus status) {
+            }
+        };
+    }
+}
@@ -0,0 +1,303 @@
+package com.gwsistemas.tracking.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gwsistemas.tracking.config.DataSourceRoutingContext;
+import com.gwsistemas.tracking.config.ShardFanOut;
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import com.gwsistemas.tracking.exception.BusinessRuleException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OccurrenceExportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ShardFanOut shardFanOut;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement preparedStatement;
+
+    private OccurrenceExportService occurrenceExportService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final LocalDateTime INICIO = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private final LocalDateTime FIM = LocalDateTime.of(2025, 2, 1, 0, 0);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    void setUp() {
+        occurrenceExportService = new OccurrenceExportService(jdbcTemplate, transactionManager, objectMapper, shardFanOut, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private ResultSet linha(long id, String codigo, TrackingStatus status, LocalDateTime data) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(id);
+        when(rs.getString(2)).thenReturn(codigo);
+        when(rs.getString(3)).thenReturn(status.name());
+        when(rs.getObject(4, LocalDateTime.class)).thenReturn(data);
+        return rs;
+    }
+
+    /**
+     * Simula a consulta: monta o statement com a conexão falsa e entrega as linhas ao handler.
+     */
+    private ArgumentCaptor<String> simularConsulta(List<ResultSet> linhas) throws SQLException {
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        when(connection.prepareStatement(sql.capture(), anyInt(), anyInt())).thenReturn(preparedStatement);
+        doAnswer(invocation -> {
+            PreparedStatementCreator creator = invocation.getArgument(0);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            creator.createPreparedStatement(connection);
+            for (ResultSet rs : linhas) {
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        return sql;
+    }
+
+    private List<JsonNode> lerLinhas(ByteArrayOutputStream saida) throws Exception {
+        List<JsonNode> linhas = new ArrayList<>();
+        for (String linha : saida.toString(StandardCharsets.UTF_8).split("\n")) {
+            linhas.add(objectMapper.readTree(linha));
+        }
+        return linhas;
+    }
+
+    /**
+     * Teste  Prova que cada ocorrência vira uma linha JSON, na ordem lida,
+     * e que a consulta usa leitura em streaming.
+     */
+    @Test
+    void deveEscreverUmaLinhaJsonPorOcorrencia_QuandoExportacaoSemSharding() throws Exception {
+        ArgumentCaptor<String> sql = simularConsulta(List.of(
+                linha(1, "BR100", TrackingStatus.EM_TRANSITO, LocalDateTime.of(2025, 1, 10, 14, 30)),
+                linha(2, "BR200", TrackingStatus.ENTREGUE, LocalDateTime.of(2025, 1, 11, 9, 0))));
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        occurrenceExportService.export(INICIO, FIM, null, saida);
+
+        List<JsonNode> linhas = lerLinhas(saida);
+        assertEquals(2, linhas.size());
+        assertEquals(1, linhas.get(0).get("occurrenceId").asLong());
+        assertEquals("BR100", linhas.get(0).get("trackingCode").asText());
+        assertEquals("EM_TRANSITO", linhas.get(0).get("status").asText());
+        assertEquals("2025-01-10T14:30:00", linhas.get(0).get("occurrenceTimestamp").asText());
+        assertEquals("BR200", linhas.get(1).get("trackingCode").asText());
+
+        assertFalse(sql.getValue().contains("oc.status = ?"));
+        verify(preparedStatement).setFetchSize(Integer.MIN_VALUE);
+        verify(preparedStatement).setObject(1, INICIO);
+        verify(preparedStatement).setObject(2, FIM);
+    }
+
+    /**
+     * Teste  Prova que o filtro de status é aplicado na consulta (no banco).
+     */
+    @Test
+    void deveFiltrarNoBanco_QuandoStatusInformado() throws Exception {
+        ArgumentCaptor<String> sql = simularConsulta(List.of());
+
+        occurrenceExportService.export(INICIO, FIM, TrackingStatus.ENTREGUE, new ByteArrayOutputStream());
+
+        assertTrue(sql.getValue().contains("oc.status = ?"));
+        verify(preparedStatement).setString(3, "ENTREGUE");
+    }
+
+    /**
+     * Simula os shards: cada tarefa roda em outra thread, com o shard no contexto,
+     * e a consulta entrega as linhas daquele shard.
+     */
+    private void simularShards(Map<String, List<ResultSet>> linhasPorShard, CountDownLatch leiturasEncerradas) throws SQLException {
+        when(shardFanOut.isSharded()).thenReturn(true);
+        when(shardFanOut.activeShards()).thenReturn(List.copyOf(linhasPorShard.keySet()));
+        when(shardFanOut.submitOnShard(anyString(), any())).thenAnswer(invocation -> {
+            String shard = invocation.getArgument(0);
+            Supplier<?> tarefa = invocation.getArgument(1);
+            return executor.submit(() -> {
+                try (DataSourceRoutingContext.Scope ignored = DataSourceRoutingContext.bindShard(shard)) {
+                    return tarefa.get();
+                }
+            });
+        });
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(preparedStatement);
+        doAnswer(invocation -> {
+            PreparedStatementCreator creator = invocation.getArgument(0);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            try {
+                creator.createPreparedStatement(connection);
+                for (ResultSet rs : linhasPorShard.get(DataSourceRoutingContext.currentShard().shardName())) {
+                    handler.processRow(rs);
+                }
+                return null;
+            } finally {
+                leiturasEncerradas.countDown();
+            }
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    /**
+     * Teste  Prova que, com sharding, as linhas dos shards são intercaladas em ordem de (data, id)
+     * e que a ocorrência presente em dois shards (cópia do resharding) sai uma única vez.
+     */
+    @Test
+    void deveIntercalarShardsEmOrdem_QuandoExportacaoComSharding() throws Exception {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 10, 8, 0);
+        Map<String, List<ResultSet>> linhasPorShard = new LinkedHashMap<>();
+        linhasPorShard.put("shard-1", List.of(
+                linha(1, "BR100", TrackingStatus.EM_TRANSITO, base),
+                linha(4, "BR100", TrackingStatus.ENTREGUE, base.plusHours(4)),
+                linha(5, "BR500", TrackingStatus.EM_TRANSITO, base.plusHours(5))));
+        linhasPorShard.put("shard-2", List.of(
+                linha(2, "BR200", TrackingStatus.EM_TRANSITO, base.plusHours(1)),
+                linha(3, "BR200", TrackingStatus.NAO_ENTREGUE, base.plusHours(1)),
+                linha(5, "BR500", TrackingStatus.EM_TRANSITO, base.plusHours(5))));
+        simularShards(linhasPorShard, new CountDownLatch(2));
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        occurrenceExportService.export(INICIO, FIM, null, saida);
+
+        List<Long> ids = lerLinhas(saida).stream().map(linha -> linha.get("occurrenceId").asLong()).toList();
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids);
+    }
+
+    /**
+     * Teste  Prova que, se o cliente desconectar no meio da exportação, a leitura de todos os shards
+     * é encerrada (as filas cheias não deixam as threads presas) e a consulta em streaming é
+     * cancelada e a conexão abortada, em vez de o driver ler o resto das linhas.
+     */
+    @Test
+    void deveEncerrarLeituraDosShards_QuandoClienteDesconecta() throws Exception {
+        Map<String, List<ResultSet>> linhasPorShard = new LinkedHashMap<>();
+        linhasPorShard.put("shard-1", Collections.nCopies(5000, linhaRepetida(LocalDateTime.of(2025, 1, 10, 8, 0))));
+        linhasPorShard.put("shard-2", Collections.nCopies(5000, linhaRepetida(LocalDateTime.of(2025, 1, 10, 9, 0))));
+        CountDownLatch leiturasEncerradas = new CountDownLatch(2);
+        simularShards(linhasPorShard, leiturasEncerradas);
+        when(preparedStatement.getConnection()).thenReturn(connection);
+
+        assertThrows(IOException.class, () -> occurrenceExportService.export(INICIO, FIM, null, clienteDesconectado()));
+        assertTrue(leiturasEncerradas.await(5, TimeUnit.SECONDS));
+
+        verify(preparedStatement, times(2)).cancel();
+        verify(connection, times(2)).abort(any());
+    }
+
+    /**
+     * Teste  Prova que, sem sharding, a desconexão do cliente cancela a consulta e aborta a conexão
+     * antes de o ResultSet ser fechado, e que o erro de escrita chega a quem chamou.
+     */
+    @Test
+    void deveAbortarConsultaAntesDeFecharResultSet_QuandoClienteDesconecta() throws Exception {
+        // Linhas suficientes para o gerador JSON esvaziar o buffer (e a escrita falhar) durante a leitura
+        ResultSet rs = linhaRepetida(LocalDateTime.of(2025, 1, 10, 14, 30));
+        List<ResultSet> linhas = Collections.nCopies(5000, rs);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(preparedStatement);
+        when(preparedStatement.getConnection()).thenReturn(connection);
+        doAnswer(invocation -> {
+            PreparedStatementCreator creator = invocation.getArgument(0);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            creator.createPreparedStatement(connection);
+            // Como o JdbcTemplate: o ResultSet é fechado depois do handler, mesmo com erro
+            try {
+                for (ResultSet linha : linhas) {
+                    handler.processRow(linha);
+                }
+                return null;
+            } finally {
+                rs.close();
+            }
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        IOException erro = assertThrows(IOException.class,
+                () -> occurrenceExportService.export(INICIO, FIM, null, clienteDesconectado()));
+        assertEquals("Conexão encerrada pelo cliente", erro.getMessage());
+
+        InOrder ordem = inOrder(preparedStatement, connection, rs);
+        ordem.verify(preparedStatement).cancel();
+        ordem.verify(connection).abort(any());
+        ordem.verify(rs).close();
+    }
+
+    private static OutputStream clienteDesconectado() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Conexão encerrada pelo cliente");
+            }
+        };
+    }
+
+    /**
+     * Linha com id crescente a cada leitura (o mesmo ResultSet é entregue várias vezes).
+     */
+    private ResultSet linhaRepetida(LocalDateTime data) throws SQLException {
+        AtomicLong ids = new AtomicLong();
+        ResultSet rs = mock(ResultSet.class, withSettings().strictness(Strictness.LENIENT));
+        when(rs.getLong(1)).thenAnswer(invocation -> ids.incrementAndGet());
+        when(rs.getString(2)).thenReturn("BR100");
+        when(rs.getString(3)).thenReturn(TrackingStatus.EM_TRANSITO.name());
+        when(rs.getObject(4, LocalDateTime.class)).thenReturn(data);
+        return rs;
+    }
+
+    /**
+     * Teste  Prova que uma janela com início igual ou posterior ao fim é rejeitada
+     * antes de qualquer consulta.
+     */
+    @Test
+    void deveLancarExcecao_QuandoJanelaInvalida() {
+        assertThrows(BusinessRuleException.class, () -> occurrenceExportService.validateWindow(FIM, INICIO));
+        assertThrows(BusinessRuleException.class,
+                () -> occurrenceExportService.export(INICIO, INICIO, null, new ByteArrayOutputStream()));
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,106 @@
+package com.gwsistemas.tracking.service;
+
+import com.gwsistemas.tracking.config.ReadYourWritesTracker;
+import com.gwsistemas.tracking.config.ShardFanOut;
+import com.gwsistemas.tracking.dto.output.OccurrenceDTO;
+import com.gwsistemas.tracking.dto.output.OrderDetailsDTO;
+import com.gwsistemas.tracking.enums.TrackingStatus;
+import com.gwsistemas.tracking.mapper.OrderMapper;
+import com.gwsistemas.tracking.model.Order;
+import com.gwsistemas.tracking.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderLookupServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private ShardFanOut shardFanOut;
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OrderLookupService orderLookupService;
+
+    @BeforeEach
+    void setUp() {
+        orderLookupService = new OrderLookupService(orderRepository, orderMapper, shardFanOut,
+                readYourWritesTracker, transactionManager);
+
+        when(orderRepository.findAllByTrackingCodeIn(any())).thenAnswer(invocation -> {
+            Collection<String> codigos = invocation.getArgument(0);
+            return codigos.stream().filter(codigo -> !codigo.equals("INEXISTENTE")).map(this::encomenda).toList();
+        });
+        when(orderMapper.toDetailsDTO(any(Order.class))).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            List<OccurrenceDTO> ocorrencias = new ArrayList<>(List.of(
+                    new OccurrenceDTO(TrackingStatus.EM_TRANSITO, LocalDateTime.of(2025, 1, 10, 8, 0)),
+                    new OccurrenceDTO(TrackingStatus.ENTREGUE, LocalDateTime.of(2025, 1, 11, 9, 0))));
+            return new OrderDetailsDTO(order.getTrackingCode(), "Cliente", "Rua A", ocorrencias);
+        });
+    }
+
+    private Order encomenda(String codigo) {
+        Order order = new Order();
+        order.setTrackingCode(codigo);
+        return order;
+    }
+
+    /**
+     * Simula dois shards: os códigos são divididos em dois grupos, consultados separadamente.
+     */
+    @SuppressWarnings("unchecked")
+    private void simularDoisShards() {
+        when(shardFanOut.onShardsFor(any(), any())).thenAnswer(invocation -> {
+            List<String> codigos = List.copyOf((Collection<String>) invocation.getArgument(0));
+            Function<List<String>, List<OrderDetailsDTO>> tarefa = invocation.getArgument(1);
+            int meio = codigos.size() / 2;
+            // O segundo shard responde primeiro
+            return List.of(tarefa.apply(codigos.subList(meio, codigos.size())), tarefa.apply(codigos.subList(0, meio)));
+        });
+    }
+
+    /**
+     * Teste  Prova que o resultado segue a ordem dos códigos informados, mesmo com as encomendas
+     * vindas de shards diferentes, e que códigos inexistentes são ignorados.
+     */
+    @Test
+    void deveManterOrdemDosCodigos_QuandoEncomendasVemDeShardsDiferentes() {
+        simularDoisShards();
+
+        List<OrderDetailsDTO> resultado = orderLookupService.getTrackingDetails(List.of("BR300", "BR100", "INEXISTENTE", "BR200"));
+
+        assertEquals(List.of("BR300", "BR100", "BR200"), resultado.stream().map(OrderDetailsDTO::getTrackingCode).toList());
+        assertEquals(LocalDateTime.of(2025, 1, 11, 9, 0), resultado.get(0).getOccurrences().get(0).getOccurrenceTimestamp());
+    }
+
+    /**
+     * Teste  Prova que códigos repetidos são consultados e devolvidos uma única vez.
+     */
+    @Test
+    void deveConsultarUmaVez_QuandoCodigosRepetidos() {
+        simularDoisShards();
+
+        List<OrderDetailsDTO> resultado = orderLookupService.getTrackingDetails(List.of("BR100", "BR200", "BR100", "BR200"));
+
+        assertEquals(List.of("BR100", "BR200"), resultado.stream().map(OrderDetailsDTO::getTrackingCode).toList());
+        verify(shardFanOut).onShardsFor(argThat(codigos -> codigos.size() == 2), any());
+    }
+}
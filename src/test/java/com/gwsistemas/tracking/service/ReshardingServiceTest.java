@@ -0,0 +1,163 @@
+package com.gwsistemas.tracking.service;
+
+import com.gwsistemas.tracking.config.ConsistentHashRing;
+import com.gwsistemas.tracking.config.ShardRingStore;
+import com.gwsistemas.tracking.config.ShardRingSynchronizer;
+import com.gwsistemas.tracking.config.ShardRouter;
+import com.gwsistemas.tracking.config.ShardRoutingDataSource;
+import com.gwsistemas.tracking.config.ShardingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Testa a cópia e a remoção do resharding com dois bancos H2 em memória no lugar dos shards.
+ */
+class ReshardingServiceTest {
+
+    private static final List<String> DDL = List.of(
+            "CREATE TABLE tb_order (id BIGINT PRIMARY KEY, tracking_code VARCHAR(255) NOT NULL UNIQUE,"
+                    + " customer_name VARCHAR(255) NOT NULL, delivery_address VARCHAR(255) NOT NULL)",
+            "CREATE TABLE tb_occurrence (id BIGINT PRIMARY KEY, status VARCHAR(50) NOT NULL,"
+                    + " occurrence_timestamp TIMESTAMP NOT NULL, order_id BIGINT NOT NULL,"
+                    + " FOREIGN KEY (order_id) REFERENCES tb_order (id) ON DELETE CASCADE)",
+            "CREATE TABLE tb_idempotency_key (record_key VARCHAR(320) PRIMARY KEY, operation VARCHAR(50) NOT NULL,"
+                    + " tracking_code VARCHAR(255) NOT NULL, request_hash CHAR(64) NOT NULL, response_status INT NOT NULL,"
+                    + " response_body VARCHAR(1000) NOT NULL, created_at TIMESTAMP NOT NULL, expires_at TIMESTAMP NOT NULL)");
+
+    private static final int ORDERS = 20;
+
+    private EmbeddedDatabase shard1;
+    private EmbeddedDatabase shard2;
+    private JdbcTemplate shard1Jdbc;
+    private JdbcTemplate shard2Jdbc;
+    private ConsistentHashRing origem;
+    private ConsistentHashRing destino;
+    private ReshardingService reshardingService;
+
+    @BeforeEach
+    void setUp() {
+        shard1 = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        shard2 = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        shard1Jdbc = new JdbcTemplate(shard1);
+        shard2Jdbc = new JdbcTemplate(shard2);
+        DDL.forEach(shard1Jdbc::execute);
+        DDL.forEach(shard2Jdbc::execute);
+
+        ShardRouter router = new ShardRouter(List.of("shard-1", "shard-2"), List.of("shard-1"), 64);
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(router, Map.of("shard-1", shard1, "shard-2", shard2));
+        ShardingProperties properties = new ShardingProperties();
+        // Lote menor que o total, para passar pela paginação por id
+        properties.setReshardBatchSize(7);
+
+        reshardingService = new ReshardingService(router, properties, mock(ShardRingStore.class),
+                mock(ShardRingSynchronizer.class), new JdbcTemplate(routing), new DataSourceTransactionManager(routing));
+        origem = router.newRing(List.of("shard-1"));
+        destino = router.newRing(List.of("shard-1", "shard-2"));
+
+        LocalDateTime agora = LocalDateTime.now();
+        for (long id = 1; id <= ORDERS; id++) {
+            String code = "BR-" + id;
+            shard1Jdbc.update("INSERT INTO tb_order VALUES (?, ?, 'Cliente', 'Rua A')", id, code);
+            shard1Jdbc.update("INSERT INTO tb_occurrence VALUES (?, 'EM_TRANSITO', ?, ?)", id * 100 + 1, agora, id);
+            shard1Jdbc.update("INSERT INTO tb_occurrence VALUES (?, 'ENTREGUE', ?, ?)", id * 100 + 2, agora.plusHours(1), id);
+            shard1Jdbc.update("INSERT INTO tb_idempotency_key VALUES (?, 'CREATE_ORDER', ?, ?, 201, '{}', ?, ?)",
+                    "key-" + id, code, "h".repeat(64), agora, agora.plusDays(1));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        shard1.shutdown();
+        shard2.shutdown();
+    }
+
+    /**
+     * Teste  Prova que só as encomendas que mudam de shard são copiadas (com ocorrências e chaves de idempotência)
+     * e que a origem só perde essas encomendas depois da remoção.
+     */
+    @Test
+    void deveCopiarEApagarSomenteEncomendasQueMudaramDeShard() {
+        Set<String> movidas = codesMovedToShard2();
+        assertFalse(movidas.isEmpty());
+
+        assertEquals(movidas.size(), reshardingService.copyMovedOrders(origem, destino));
+        assertEquals(ORDERS, count(shard1Jdbc, "tb_order"));
+
+        assertEquals(movidas.size(), reshardingService.deleteMovedOrders(origem, destino));
+
+        assertEquals(movidas, new HashSet<>(shard2Jdbc.queryForList("SELECT tracking_code FROM tb_order", String.class)));
+        assertEquals(movidas.size() * 2L, count(shard2Jdbc, "tb_occurrence"));
+        assertEquals(movidas.size(), count(shard2Jdbc, "tb_idempotency_key"));
+        assertEquals(ORDERS - movidas.size(), count(shard1Jdbc, "tb_order"));
+        assertEquals((ORDERS - movidas.size()) * 2L, count(shard1Jdbc, "tb_occurrence"));
+        assertEquals(ORDERS - movidas.size(), count(shard1Jdbc, "tb_idempotency_key"));
+    }
+
+    /**
+     * Teste  Prova que uma encomenda cuja cópia não confere no destino não é removida da origem.
+     */
+    @Test
+    void deveManterEncomendaNaOrigem_QuandoCopiaNaoConfere() {
+        Set<String> movidas = codesMovedToShard2();
+        reshardingService.copyMovedOrders(origem, destino);
+
+        String incompleta = movidas.iterator().next();
+        long orderId = Long.parseLong(incompleta.substring("BR-".length()));
+        shard2Jdbc.update("DELETE FROM tb_occurrence WHERE id = ?", orderId * 100 + 2);
+
+        assertThrows(IllegalStateException.class, () -> reshardingService.deleteMovedOrders(origem, destino));
+
+        assertEquals(1, shard1Jdbc.queryForObject("SELECT COUNT(*) FROM tb_order WHERE tracking_code = ?", Long.class, incompleta));
+        assertEquals(2, shard1Jdbc.queryForObject("SELECT COUNT(*) FROM tb_occurrence WHERE order_id = ?", Long.class, orderId));
+        assertEquals(ORDERS - movidas.size() + 1, count(shard1Jdbc, "tb_order"));
+    }
+
+    /**
+     * Teste  Prova que a cópia deixada por uma tentativa cancelada é refeita, incluindo as escritas
+     * aceitas na origem depois do cancelamento.
+     */
+    @Test
+    void deveRefazerCopia_QuandoTentativaAnteriorFoiCancelada() {
+        Set<String> movidas = codesMovedToShard2();
+        reshardingService.copyMovedOrders(origem, destino);
+
+        long orderId = Long.parseLong(movidas.iterator().next().substring("BR-".length()));
+        shard1Jdbc.update("INSERT INTO tb_occurrence VALUES (?, 'NAO_ENTREGUE', ?, ?)",
+                orderId * 100 + 3, LocalDateTime.now().plusHours(2), orderId);
+
+        assertEquals(movidas.size(), reshardingService.copyMovedOrders(origem, destino));
+
+        assertEquals(3, shard2Jdbc.queryForObject("SELECT COUNT(*) FROM tb_occurrence WHERE order_id = ?", Long.class, orderId));
+        assertEquals(movidas.size(), count(shard2Jdbc, "tb_order"));
+        assertEquals(movidas.size(), reshardingService.deleteMovedOrders(origem, destino));
+    }
+
+    private Set<String> codesMovedToShard2() {
+        Set<String> movidas = new HashSet<>();
+        IntStream.rangeClosed(1, ORDERS)
+                .mapToObj(id -> "BR-" + id)
+                .filter(code -> destino.shardFor(code).equals("shard-2"))
+                .forEach(movidas::add);
+        return movidas;
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate, String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+}
@@ -1,7 +1,10 @@
 package com.gwsistemas.tracking.service;
 
+import com.gwsistemas.tracking.config.ReadYourWritesTracker;
+import com.gwsistemas.tracking.config.ShardTransactionGuard;
 import com.gwsistemas.tracking.dto.input.OccurrenceCreateDTO;
 import com.gwsistemas.tracking.dto.output.OccurrenceDTO;
+import com.gwsistemas.tracking.dto.output.OrderDetailsDTO;
 import com.gwsistemas.tracking.enums.TrackingStatus;
 import com.gwsistemas.tracking.exception.BusinessRuleException;
 import com.gwsistemas.tracking.exception.ResourceNotFoundException; // Import necessário
@@ -14,12 +17,15 @@ import com.gwsistemas.tracking.repository.OrderRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -35,6 +41,12 @@ class TrackingServiceTest {
     private OrderMapper orderMapper;
     @Mock
     private OccurrenceMapper occurrenceMapper;
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+    @Mock
+    private DeliveryAnalyticsService deliveryAnalyticsService;
+    @Mock
+    private ShardTransactionGuard shardTransactionGuard;
 
     @InjectMocks
     private TrackingService trackingService;
@@ -52,6 +64,7 @@ class TrackingServiceTest {
     void setUp() {
         // Criamos os objetos "base" aqui
         encomendaFalsa = new Order();
+        encomendaFalsa.setId(1L);
         encomendaFalsa.setTrackingCode(CODIGO_RASTREIO);
         encomendaFalsa.setCustomerName("Cliente Teste");
 
@@ -69,12 +82,9 @@ class TrackingServiceTest {
         ultimaOcorrencia.setStatus(TrackingStatus.ENTREGUE);
         ultimaOcorrencia.setOccurrenceTimestamp(LocalDateTime.now().minusDays(1));
 
-        encomendaFalsa.setOccurrences(List.of(ultimaOcorrencia));
-
         dtoEntrada.setStatus(TrackingStatus.EM_TRANSITO);
 
-        when(orderRepository.findByTrackingCode(CODIGO_RASTREIO))
-                .thenReturn(Optional.of(encomendaFalsa));
+        simularUltimaOcorrencia(ultimaOcorrencia);
 
         BusinessRuleException excecao = assertThrows(BusinessRuleException.class, () -> {
             trackingService.registerNewOccurrence(CODIGO_RASTREIO, dtoEntrada);
@@ -95,12 +105,9 @@ class TrackingServiceTest {
         ultimaOcorrencia.setStatus(TrackingStatus.NAO_ENTREGUE);
         ultimaOcorrencia.setOccurrenceTimestamp(LocalDateTime.now().minusDays(1));
 
-        encomendaFalsa.setOccurrences(List.of(ultimaOcorrencia));
-
         dtoEntrada.setStatus(TrackingStatus.ENTREGUE);
 
-        when(orderRepository.findByTrackingCode(CODIGO_RASTREIO))
-                .thenReturn(Optional.of(encomendaFalsa));
+        simularUltimaOcorrencia(ultimaOcorrencia);
 
         BusinessRuleException excecao = assertThrows(BusinessRuleException.class, () -> {
             trackingService.registerNewOccurrence(CODIGO_RASTREIO, dtoEntrada);
@@ -116,7 +123,7 @@ class TrackingServiceTest {
      */
     @Test
     void deveLancarExcecao_QuandoEncomendaNaoForEncontrada() {
-        when(orderRepository.findByTrackingCode(CODIGO_RASTREIO))
+        when(orderRepository.findByTrackingCodeForUpdate(CODIGO_RASTREIO))
                 .thenReturn(Optional.empty()); // Retorna um Optional vazio
 
         assertThrows(ResourceNotFoundException.class, () -> {
@@ -133,7 +140,6 @@ class TrackingServiceTest {
 
         Occurrence ultimaOcorrencia = new Occurrence();
         ultimaOcorrencia.setStatus(TrackingStatus.EM_TRANSITO);
-        encomendaFalsa.setOccurrences(List.of(ultimaOcorrencia));
 
         dtoEntrada.setStatus(TrackingStatus.ENTREGUE);
 
@@ -141,8 +147,7 @@ class TrackingServiceTest {
         OccurrenceDTO dtoDeSaida = new OccurrenceDTO();
         dtoDeSaida.setStatus(TrackingStatus.ENTREGUE);
 
-        when(orderRepository.findByTrackingCode(CODIGO_RASTREIO))
-                .thenReturn(Optional.of(encomendaFalsa));
+        simularUltimaOcorrencia(ultimaOcorrencia);
 
         when(occurrenceMapper.toEntity(dtoEntrada))
                 .thenReturn(new Occurrence());
@@ -159,5 +164,86 @@ class TrackingServiceTest {
         assertEquals(TrackingStatus.ENTREGUE, resultadoDTO.getStatus());
 
         verify(occurrenceRepository, times(1)).save(any(Occurrence.class));
+        verify(readYourWritesTracker).markWritten(CODIGO_RASTREIO);
+    }
+
+    /**
+     * Teste  Prova que a consulta da timeline abre o escopo de read-your-writes do código
+     * (primário logo após uma escrita) antes de buscar a encomenda.
+     */
+    @Test
+    void deveAbrirEscopoDoPrimario_QuandoConsultarTimeline() {
+        OrderDetailsDTO detalhes = new OrderDetailsDTO(CODIGO_RASTREIO, "Cliente Teste", "Rua A", new ArrayList<>(List.of(
+                new OccurrenceDTO(TrackingStatus.EM_TRANSITO, LocalDateTime.of(2025, 1, 10, 8, 0)),
+                new OccurrenceDTO(TrackingStatus.ENTREGUE, LocalDateTime.of(2025, 1, 11, 9, 0)))));
+        AtomicBoolean escopoFechado = new AtomicBoolean();
+
+        when(readYourWritesTracker.primaryScopeIfRecentlyWritten(CODIGO_RASTREIO))
+                .thenReturn(() -> escopoFechado.set(true));
+        when(orderRepository.findByTrackingCode(CODIGO_RASTREIO))
+                .thenReturn(Optional.of(encomendaFalsa));
+        when(orderMapper.toDetailsDTO(encomendaFalsa))
+                .thenReturn(detalhes);
+
+        OrderDetailsDTO resultado = trackingService.getTrackingDetails(CODIGO_RASTREIO);
+
+        assertEquals(TrackingStatus.ENTREGUE, resultado.getOccurrences().get(0).getStatus());
+        assertTrue(escopoFechado.get());
+        InOrder ordem = inOrder(readYourWritesTracker, orderRepository);
+        ordem.verify(readYourWritesTracker).primaryScopeIfRecentlyWritten(CODIGO_RASTREIO);
+        ordem.verify(orderRepository).findByTrackingCode(CODIGO_RASTREIO);
+    }
+
+    /**
+     * Teste  Prova que a encomenda é buscada pelo id natural com lock de escrita,
+     * e não pelo caminho em cache usado nas consultas.
+     */
+    @Test
+    void deveBuscarEncomendaPeloIdNaturalComLock_QuandoRegistrarOcorrencia() {
+        dtoEntrada.setStatus(TrackingStatus.EM_TRANSITO);
+        when(orderRepository.findByTrackingCodeForUpdate(CODIGO_RASTREIO))
+                .thenReturn(Optional.of(encomendaFalsa));
+        when(occurrenceMapper.toEntity(dtoEntrada))
+                .thenReturn(new Occurrence());
+        when(occurrenceRepository.save(any(Occurrence.class)))
+                .thenReturn(new Occurrence());
+
+        trackingService.registerNewOccurrence(CODIGO_RASTREIO, dtoEntrada);
+
+        verify(orderRepository).findByTrackingCodeForUpdate(CODIGO_RASTREIO);
+        verify(orderRepository, never()).findByTrackingCode(any());
+        verify(occurrenceRepository).findFirstByOrderIdOrderByOccurrenceTimestampDescIdDesc(encomendaFalsa.getId());
+    }
+
+    /**
+     * Teste  Prova que a validação usa a última ocorrência lida do banco
+     * e ignora a coleção da encomenda, que pode estar desatualizada no cache.
+     */
+    @Test
+    void deveIgnorarColecaoEmCache_QuandoColecaoEstiverDesatualizada() {
+        Occurrence ocorrenciaEmCache = new Occurrence();
+        ocorrenciaEmCache.setStatus(TrackingStatus.EM_TRANSITO);
+        ocorrenciaEmCache.setOccurrenceTimestamp(LocalDateTime.now().minusDays(1));
+        encomendaFalsa.setOccurrences(List.of(ocorrenciaEmCache));
+
+        Occurrence ultimaOcorrencia = new Occurrence();
+        ultimaOcorrencia.setStatus(TrackingStatus.ENTREGUE);
+        ultimaOcorrencia.setOccurrenceTimestamp(LocalDateTime.now().minusHours(1));
+
+        dtoEntrada.setStatus(TrackingStatus.SAIDA_PARA_ENTREGA);
+
+        simularUltimaOcorrencia(ultimaOcorrencia);
+
+        assertThrows(BusinessRuleException.class, () -> trackingService.registerNewOccurrence(CODIGO_RASTREIO, dtoEntrada));
+
+        verify(occurrenceRepository, never()).save(any(Occurrence.class));
+        verify(deliveryAnalyticsService, never()).recordOccurrence(any(), any(), any(), any(), any());
+    }
+
+    private void simularUltimaOcorrencia(Occurrence ultimaOcorrencia) {
+        when(orderRepository.findByTrackingCodeForUpdate(CODIGO_RASTREIO))
+                .thenReturn(Optional.of(encomendaFalsa));
+        when(occurrenceRepository.findFirstByOrderIdOrderByOccurrenceTimestampDescIdDesc(encomendaFalsa.getId()))
+                .thenReturn(Optional.of(ultimaOcorrencia));
     }
 }
\ No newline at end of file